@@ -0,0 +1,54 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of loading an asset that isn't in the cache: locating it in the classpath, reading it, hashing it
+ * and compressing it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetLoaderBenchmark {
+    @Param({"bootstrap/css/bootstrap.css", "bootstrap/img/glyphicons-halflings.png", "jquery/jquery.js"})
+    public String asset;
+
+    @Param({"true", "false"})
+    public boolean gzip;
+
+    private AssetLoader loader;
+    private AssetId id;
+
+    @Setup
+    public void setup() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(gzip);
+
+        loader = new AssetLoader(new VersionLoader(ImmutableList.copyOf(WebJarServlet.DEFAULT_MAVEN_GROUPS)), null,
+                configuration);
+
+        int slash = asset.indexOf('/');
+        id = new AssetId(asset.substring(0, slash), asset.substring(slash + 1));
+    }
+
+    @Benchmark
+    public Asset coldLoad() throws Exception {
+        return loader.load(id);
+    }
+}
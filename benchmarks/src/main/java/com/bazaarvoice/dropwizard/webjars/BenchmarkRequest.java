@@ -0,0 +1,78 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.Maps;
+import com.google.common.reflect.Reflection;
+import org.eclipse.jetty.http.HttpFields;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * A minimal, reusable request for driving {@link WebJarServlet} outside of a container.  Only the methods that the
+ * servlet uses are implemented, everything else throws.
+ */
+class BenchmarkRequest extends HttpServletRequestWrapper {
+    private final String pathInfo;
+    private final Map<String, String> headers = Maps.newHashMap();
+    private final Map<String, Long> dateHeaders = Maps.newHashMap();
+
+    BenchmarkRequest(String path) {
+        super(Reflection.newProxy(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+        this.pathInfo = path.substring(WebJarServlet.URL_PREFIX.length() - 1);
+    }
+
+    BenchmarkRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    BenchmarkRequest dateHeader(String name, long value) {
+        headers.put(name, HttpFields.formatDate(value));
+        dateHeaders.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return "/webjars";
+    }
+
+    @Override
+    public String getPathInfo() {
+        return pathInfo;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        Long value = dateHeaders.get(name);
+        return (value != null) ? value : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "GET /webjars" + pathInfo;
+    }
+}
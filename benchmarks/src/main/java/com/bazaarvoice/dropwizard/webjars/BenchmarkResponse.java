@@ -0,0 +1,109 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.net.HttpHeaders;
+import com.google.common.reflect.Reflection;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * A minimal, reusable response for driving {@link WebJarServlet} outside of a container.  Headers are discarded and
+ * the body is written to a sink that only counts bytes, so the benchmarks measure the servlet and not the container.
+ */
+class BenchmarkResponse extends HttpServletResponseWrapper {
+    private final CountingOutputStream output = new CountingOutputStream();
+    private int status;
+    private String eTag;
+
+    BenchmarkResponse() {
+        super(Reflection.newProxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+    }
+
+    /** Prepare the response to be used for another request. */
+    BenchmarkResponse recycle() {
+        status = SC_OK;
+        output.count = 0;
+        return this;
+    }
+
+    int getStatusCode() {
+        return status;
+    }
+
+    long getBytesWritten() {
+        return output.count;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        status = SC_FOUND;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (HttpHeaders.ETAG.equals(name)) {
+            eTag = value;
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+    }
+
+    @Override
+    public void setContentType(String type) {
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return output;
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.net.HttpHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link WebJarServlet} requests once their assets are in the cache: full responses, conditional
+ * requests that end in a 304, and requests for things that don't exist.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebJarServletBenchmark {
+    private static final String ASSET = "/webjars/bootstrap/css/bootstrap.css";
+
+    @Param({"false", "true"})
+    public boolean classpathIndex;
+
+    @Param({"GUAVA", "TINY_LFU", "PRELOADED"})
+    public AssetCacheType cacheType;
+
+    private WebJarServlet servlet;
+    private BenchmarkResponse response;
+
+    private BenchmarkRequest hit;
+    private BenchmarkRequest gzipHit;
+    private BenchmarkRequest versionedHit;
+    private BenchmarkRequest notModified;
+    private BenchmarkRequest notModifiedSince;
+    private BenchmarkRequest missingLibrary;
+    private BenchmarkRequest missingResource;
+
+    @Setup
+    public void setup() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setClasspathIndex(classpathIndex);
+        configuration.getCache().setType(cacheType);
+
+        servlet = new WebJarServlet(null, null, configuration);
+        response = new BenchmarkResponse();
+
+        hit = new BenchmarkRequest(ASSET);
+        gzipHit = new BenchmarkRequest(ASSET).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        versionedHit = new BenchmarkRequest("/webjars/bootstrap/2.3.1/css/bootstrap.css");
+        missingLibrary = new BenchmarkRequest("/webjars/webjar-that-does-not-exist/css/app.css");
+        missingResource = new BenchmarkRequest("/webjars/bootstrap/css/bootstrap.resource.that.does.not.exist");
+
+        // Prime the cache and find out what the validators of the asset are
+        servlet.doGet(hit, response.recycle());
+        notModified = new BenchmarkRequest(ASSET)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"some-other-etag\", " + response.getETag());
+        notModifiedSince = new BenchmarkRequest(ASSET)
+                .dateHeader(HttpHeaders.IF_MODIFIED_SINCE, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int hit() throws Exception {
+        servlet.doGet(hit, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int gzipHit() throws Exception {
+        servlet.doGet(gzipHit, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int versionedHit() throws Exception {
+        servlet.doGet(versionedHit, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int notModifiedETag() throws Exception {
+        servlet.doGet(notModified, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int notModifiedSince() throws Exception {
+        servlet.doGet(notModifiedSince, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int missingLibrary() throws Exception {
+        servlet.doGet(missingLibrary, response.recycle());
+        return response.getStatusCode();
+    }
+
+    @Benchmark
+    public int missingResource() throws Exception {
+        servlet.doGet(missingResource, response.recycle());
+        return response.getStatusCode();
+    }
+}
@@ -0,0 +1,69 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import com.google.common.net.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Sends requests to a {@link LoadTestServer}.  Connections are kept alive and reused by the JDK as long as every
+ * response is read to the end, so each client thread holds on to a connection of its own the same way a browser does.
+ */
+class LoadTestClient {
+    private final String baseUrl;
+
+    LoadTestClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /** Send a request and read the whole response, returning its status code. */
+    int send(LoadTestRequest request) throws IOException {
+        HttpURLConnection connection = open(request.path);
+        if (request.header != null) {
+            connection.setRequestProperty(request.header, request.value);
+        }
+
+        int status = connection.getResponseCode();
+        consume(connection);
+        return status;
+    }
+
+    /** Returns the ETag of an asset, or {@code null} if it doesn't exist. */
+    String getETag(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        int status = connection.getResponseCode();
+        String eTag = connection.getHeaderField(HttpHeaders.ETAG);
+        consume(connection);
+        return (status == HttpURLConnection.HTTP_OK) ? eTag : null;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    /** Read the rest of a response so that its connection can be reused. */
+    private static void consume(HttpURLConnection connection) throws IOException {
+        InputStream stream = (connection.getResponseCode() >= 400)
+                ? connection.getErrorStream()
+                : connection.getInputStream();
+        if (stream == null) {
+            return;
+        }
+
+        Closer closer = Closer.create();
+        try {
+            ByteStreams.copy(closer.register(stream), ByteStreams.nullOutputStream());
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+    }
+}
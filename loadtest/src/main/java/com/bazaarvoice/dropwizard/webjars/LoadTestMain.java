@@ -0,0 +1,316 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load tests {@link WebJarServlet} running in an embedded Jetty.  Each scenario starts a server of its own and has a
+ * number of client threads make requests as fast as they can, first for a warmup period and then for a measured one,
+ * recording the latency of every request.  The results are printed, and written to a JSON file that can be compared
+ * against the results of another version by passing it as the baseline of the next run.
+ * <p/>
+ * Options are given as {@code --name=value}, see {@link #DEFAULTS} for all of them and their default values.
+ */
+public class LoadTestMain {
+    private static final Map<String, String> DEFAULTS = ImmutableMap.<String, String>builder()
+            .put("threads", "64")                      // Client threads, each with a connection of its own
+            .put("server-threads", "256")              // The size of Jetty's thread pool
+            .put("warmup", "10")                       // Seconds of requests before measuring, per scenario
+            .put("duration", "30")                     // Seconds of measured requests, per scenario
+            .put("scenarios", "hits,not-modified,not-found,thrash,mixed,cold-start")
+            .put("mix", "")                            // A request mix to run instead of the scenarios
+            .put("cold-starts", "5")                   // How many times the cold-start scenario starts a server
+            .put("groups", "org.webjars")
+            .put("hot", "bootstrap/css/bootstrap.css,bootstrap/css/bootstrap-responsive.css,"
+                    + "bootstrap/js/bootstrap.js,jquery/jquery.js")
+            .put("cache-type", "GUAVA")
+            .put("cache-weight", String.valueOf(new AssetCacheConfiguration().getMaximumWeight()))
+            .put("thrash-cache-weight", String.valueOf(64 * 1024))
+            .put("gzip", "true")                       // Hits and misses ask for gzipped assets
+            .put("async", "false")
+            .put("classpath-index", "false")
+            .put("seed", "0")
+            .put("label", "")                          // Identifies the results, for example the version tested
+            .put("output", "loadtest-results.json")
+            .put("baseline", "")                       // Results of an earlier run to compare against
+            .build();
+
+    private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private final Map<String, String> options;
+    private final int threads;
+    private final String[] groups;
+    private final List<String> hot;
+
+    private LoadTestMain(Map<String, String> options) {
+        this.options = options;
+        this.threads = getInt("threads");
+        this.groups = Iterables.toArray(LIST_SPLITTER.split(options.get("groups")), String.class);
+        this.hot = ImmutableList.copyOf(LIST_SPLITTER.split(options.get("hot")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Maps.newLinkedHashMap(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) {
+                System.err.println("Unknown option " + arg + ", the options and their defaults are:");
+                for (Map.Entry<String, String> option : DEFAULTS.entrySet()) {
+                    System.err.println("  --" + option.getKey() + '=' + option.getValue());
+                }
+                System.exit(1);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+
+        new LoadTestMain(options).run();
+    }
+
+    private void run() throws Exception {
+        // Let every client thread keep its connection alive between requests
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        Map<String, Object> results = Maps.newLinkedHashMap();
+        results.put("label", options.get("label"));
+        results.put("timestamp", System.currentTimeMillis());
+        results.put("options", options);
+
+        Map<String, Object> scenarios = Maps.newLinkedHashMap();
+        if (!options.get("mix").isEmpty()) {
+            ScenarioResult result = runSteadyState(new RequestMix(options.get("mix")), getLong("cache-weight"));
+            result.print("custom", System.out);
+            scenarios.put("custom", result.toJson());
+        } else {
+            for (String name : LIST_SPLITTER.split(options.get("scenarios"))) {
+                Scenario scenario = Scenario.fromName(name);
+                ScenarioResult result;
+                if (scenario == Scenario.COLD_START) {
+                    result = runColdStarts();
+                } else {
+                    long cacheWeight = getLong((scenario == Scenario.THRASH) ? "thrash-cache-weight" : "cache-weight");
+                    result = runSteadyState(new RequestMix(scenario.mix), cacheWeight);
+                }
+                result.print(scenario.getName(), System.out);
+                scenarios.put(scenario.getName(), result.toJson());
+            }
+        }
+        results.put("scenarios", scenarios);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(new File(options.get("output")), results);
+        System.out.println("Wrote results to " + options.get("output"));
+
+        if (!options.get("baseline").isEmpty()) {
+            compare(mapper.readValue(new File(options.get("baseline")), Map.class), results);
+        }
+    }
+
+    /** Run a request mix against a warmed up server for the configured duration. */
+    private ScenarioResult runSteadyState(final RequestMix mix, long cacheWeight) throws Exception {
+        LoadTestServer server = new LoadTestServer(createConfiguration(cacheWeight), groups, getInt("server-threads"));
+        server.start();
+        try {
+            final LoadTestClient client = new LoadTestClient(server.getBaseUrl());
+            final LoadTestTargets targets = LoadTestTargets.create(hot, groups, client);
+
+            final long warmupNanos = TimeUnit.SECONDS.toNanos(getInt("warmup"));
+            final long durationNanos = TimeUnit.SECONDS.toNanos(getInt("duration"));
+            ScenarioResult result = runClients(new ClientFactory() {
+                @Override
+                public Callable<ScenarioResult> create(final int thread, final long start) {
+                    return new Callable<ScenarioResult>() {
+                        @Override
+                        public ScenarioResult call() throws Exception {
+                            Random random = new Random(getInt("seed") + thread);
+                            ScenarioResult result = new ScenarioResult();
+                            long measureFrom = start + warmupNanos;
+                            long until = measureFrom + durationNanos;
+                            long now;
+                            while ((now = System.nanoTime()) < until) {
+                                RequestKind kind = mix.pick(random);
+                                send(client, kind, kind.next(targets, random), (now >= measureFrom) ? result : null);
+                            }
+                            return result;
+                        }
+                    };
+                }
+            });
+            result.addElapsedNanos(durationNanos);
+            return result;
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Start servers from scratch and have every client ask for every asset once, in an order of its own, straight
+     * away.  Nothing is cached beforehand, so each of the first requests for an asset has to load it.
+     */
+    private ScenarioResult runColdStarts() throws Exception {
+        ScenarioResult total = new ScenarioResult();
+        for (int i = 0; i < getInt("cold-starts"); i++) {
+            LoadTestServer server = new LoadTestServer(createConfiguration(getLong("cache-weight")), groups,
+                    getInt("server-threads"));
+            server.start();
+            try {
+                final LoadTestClient client = new LoadTestClient(server.getBaseUrl());
+                final LoadTestTargets targets = LoadTestTargets.create(hot, groups, null);
+                final int round = i;
+
+                long start = System.nanoTime();
+                ScenarioResult result = runClients(new ClientFactory() {
+                    @Override
+                    public Callable<ScenarioResult> create(final int thread, long start) {
+                        return new Callable<ScenarioResult>() {
+                            @Override
+                            public ScenarioResult call() throws Exception {
+                                List<String> paths = Lists.newArrayList(targets.all);
+                                Collections.shuffle(paths, new Random(getInt("seed") + round * threads + thread));
+
+                                ScenarioResult result = new ScenarioResult();
+                                for (String path : paths) {
+                                    LoadTestRequest request =
+                                            new LoadTestRequest(path, HttpHeaders.ACCEPT_ENCODING, "gzip");
+                                    send(client, RequestKind.COLD, request, result);
+                                }
+                                return result;
+                            }
+                        };
+                    }
+                });
+                total.add(result);
+                total.addElapsedNanos(System.nanoTime() - start);
+            } finally {
+                server.stop();
+            }
+        }
+        return total;
+    }
+
+    /** Run a client on each thread, all starting at the same time, and add up their results. */
+    private ScenarioResult runClients(ClientFactory factory) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("loadtest-client-%d").build());
+        try {
+            final CountDownLatch ready = new CountDownLatch(threads);
+            final CountDownLatch go = new CountDownLatch(1);
+            final long start = System.nanoTime();
+
+            List<Future<ScenarioResult>> futures = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                final Callable<ScenarioResult> client = factory.create(i, start);
+                futures.add(executor.submit(new Callable<ScenarioResult>() {
+                    @Override
+                    public ScenarioResult call() throws Exception {
+                        ready.countDown();
+                        go.await();
+                        return client.call();
+                    }
+                }));
+            }
+
+            ready.await();
+            go.countDown();
+
+            ScenarioResult result = new ScenarioResult();
+            for (Future<ScenarioResult> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Send a request and record how long it took, unless the result is {@code null} because it's still warming up. */
+    private static void send(LoadTestClient client, RequestKind kind, LoadTestRequest request, ScenarioResult result) {
+        long start = System.nanoTime();
+        try {
+            int status = client.send(request);
+            if (result != null) {
+                result.record(kind, status, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            if (result != null) {
+                result.recordError(kind, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private WebJarConfiguration createConfiguration(long cacheWeight) {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.getCache().setType(AssetCacheType.valueOf(options.get("cache-type")));
+        configuration.getCache().setMaximumWeight(cacheWeight);
+        configuration.setGzip(Boolean.parseBoolean(options.get("gzip")));
+        configuration.setAsync(Boolean.parseBoolean(options.get("async")));
+        configuration.setClasspathIndex(Boolean.parseBoolean(options.get("classpath-index")));
+        return configuration;
+    }
+
+    private int getInt(String option) {
+        return Integer.parseInt(options.get(option));
+    }
+
+    private long getLong(String option) {
+        return Long.parseLong(options.get(option));
+    }
+
+    /** Print how the throughput and latency of each scenario changed since the baseline. */
+    @SuppressWarnings("unchecked")
+    private static void compare(Map<?, ?> baseline, Map<String, Object> results) {
+        System.out.println();
+        System.out.println("Compared to " + baseline.get("label") + ':');
+
+        Map<String, Object> baselineScenarios = (Map<String, Object>) baseline.get("scenarios");
+        Map<String, Object> scenarios = (Map<String, Object>) results.get("scenarios");
+        for (Map.Entry<String, Object> entry : scenarios.entrySet()) {
+            Map<String, Object> before = (Map<String, Object>) baselineScenarios.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+
+            Map<String, Object> after = (Map<String, Object>) entry.getValue();
+            Map<String, Object> beforeLatency = (Map<String, Object>) before.get("latency");
+            Map<String, Object> afterLatency = (Map<String, Object>) after.get("latency");
+            StringBuilder line = new StringBuilder(String.format("%-14s throughput %s", entry.getKey(),
+                    change(before.get("throughput"), after.get("throughput"))));
+            for (String percentile : new String[] { "p50", "p99", "p99.9" }) {
+                line.append(String.format("   %s %s", percentile,
+                        change(beforeLatency.get(percentile), afterLatency.get(percentile))));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static String change(Object before, Object after) {
+        double from = ((Number) before).doubleValue();
+        double to = ((Number) after).doubleValue();
+        return String.format("%.1f -> %.1f (%+.1f%%)", from, to, (from != 0) ? (to - from) * 100 / from : 0);
+    }
+
+    /** Creates the work of one client thread, given its number and when the clients started. */
+    private interface ClientFactory {
+        Callable<ScenarioResult> create(int thread, long start);
+    }
+}
@@ -0,0 +1,14 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+/** A request for an asset, with at most one extra header. */
+class LoadTestRequest {
+    final String path;
+    final String header;
+    final String value;
+
+    LoadTestRequest(String path, String header, String value) {
+        this.path = path;
+        this.header = header;
+        this.value = value;
+    }
+}
@@ -0,0 +1,54 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.servlet.ServletMapping;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * An embedded Jetty serving WebJars on a local port.  The servlet is set up exactly like it is in
+ * {@code WebJarServletTest}, with {@link TestWebJarServlet} mapped to the asset and combination paths, so every server
+ * starts with an empty cache.
+ */
+class LoadTestServer {
+    private final Server server;
+    private final ServerConnector connector;
+
+    LoadTestServer(WebJarConfiguration configuration, String[] groups, int threads) {
+        TestWebJarServlet.setConfiguration(configuration);
+        TestWebJarServlet.setMavenGroups(groups);
+
+        server = new Server(new QueuedThreadPool(threads));
+        connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler();
+        ServletHolder holder = context.addServlet(TestWebJarServlet.class, TestWebJarServlet.URL_PREFIX + "*");
+        holder.setAsyncSupported(true);
+        holder.setInitOrder(0);  // Create the servlet when the server starts rather than during the first request
+
+        ServletMapping combo = new ServletMapping();
+        combo.setServletName(holder.getName());
+        combo.setPathSpec(TestWebJarServlet.COMBO_PATH);
+        context.getServletHandler().addServletMapping(combo);
+        server.setHandler(context);
+    }
+
+    void start() throws Exception {
+        server.start();
+    }
+
+    void stop() throws Exception {
+        server.stop();
+        TestWebJarServlet.resetConfiguration();
+        TestWebJarServlet.resetMavenGroups();
+    }
+
+    /** Returns the URL that assets are served under, ending with a slash. */
+    String getBaseUrl() {
+        return "http://localhost:" + connector.getLocalPort() + TestWebJarServlet.URL_PREFIX;
+    }
+}
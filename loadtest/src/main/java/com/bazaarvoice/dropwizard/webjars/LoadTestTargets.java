@@ -0,0 +1,56 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The assets that requests are made for.  The hot assets are the handful that every page uses, and stay cached unless
+ * something pushes them out.  Every other asset of every library in the classpath is only asked for by requests that
+ * are meant to miss the cache.
+ */
+class LoadTestTargets {
+    /** The paths of the hot assets, relative to the servlet. */
+    final List<String> hot;
+
+    /** The paths of every asset in the classpath, relative to the servlet. */
+    final List<String> all;
+
+    /** The ETag of each hot asset, for requests that revalidate it. */
+    final Map<String, String> eTags;
+
+    private LoadTestTargets(List<String> hot, List<String> all, Map<String, String> eTags) {
+        this.hot = hot;
+        this.all = all;
+        this.eTags = eTags;
+    }
+
+    /**
+     * Find every asset in the classpath and ask the server for the ETags of the hot ones.  Without a client nothing is
+     * asked for, so that the server's cache stays empty, and there are no ETags.
+     */
+    static LoadTestTargets create(List<String> hot, String[] groups, LoadTestClient client) throws IOException {
+        WebJarIndex index = WebJarIndex.build(LoadTestTargets.class.getClassLoader(), ImmutableList.copyOf(groups));
+        ImmutableList.Builder<String> all = ImmutableList.builder();
+        for (String library : Ordering.natural().sortedCopy(index.getLibraries())) {
+            for (String resource : Ordering.natural().sortedCopy(index.getResources(library))) {
+                all.add(library + '/' + resource);
+            }
+        }
+
+        ImmutableMap.Builder<String, String> eTags = ImmutableMap.builder();
+        for (String path : (client != null) ? hot : ImmutableList.<String>of()) {
+            String eTag = client.getETag(path);
+            if (eTag == null) {
+                throw new IllegalArgumentException("Hot asset " + path + " doesn't exist");
+            }
+            eTags.put(path, eTag);
+        }
+
+        return new LoadTestTargets(ImmutableList.copyOf(hot), all.build(), eTags.build());
+    }
+}
@@ -0,0 +1,71 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.net.HttpHeaders;
+
+import java.util.List;
+import java.util.Random;
+
+/** The kinds of request that a load test makes, each of which exercises a different path through the servlet. */
+enum RequestKind {
+    /** A gzipped hot asset, which should always be a cache hit. */
+    HIT {
+        @Override
+        LoadTestRequest next(LoadTestTargets targets, Random random) {
+            return new LoadTestRequest(pick(targets.hot, random), HttpHeaders.ACCEPT_ENCODING, "gzip");
+        }
+    },
+
+    /** A conditional request for a hot asset that the client already has, which ends in a 304. */
+    NOT_MODIFIED {
+        @Override
+        LoadTestRequest next(LoadTestTargets targets, Random random) {
+            String path = pick(targets.hot, random);
+            return new LoadTestRequest(path, HttpHeaders.IF_NONE_MATCH, targets.eTags.get(path));
+        }
+    },
+
+    /** A request for a library or resource that doesn't exist, as in a flood of 404s. */
+    NOT_FOUND {
+        @Override
+        LoadTestRequest next(LoadTestTargets targets, Random random) {
+            // Half the requests are for missing resources of real libraries, half for libraries that don't exist
+            String path = pick(targets.all, random);
+            String missing = random.nextBoolean()
+                    ? path.substring(0, path.indexOf('/')) + "/missing-" + random.nextInt(1000000) + ".js"
+                    : "missing-" + random.nextInt(1000000) + "/missing.js";
+            return new LoadTestRequest(missing, null, null);
+        }
+    },
+
+    /** Any asset in the classpath, so that a small cache is constantly evicting and loading assets. */
+    THRASH {
+        @Override
+        LoadTestRequest next(LoadTestTargets targets, Random random) {
+            return new LoadTestRequest(pick(targets.all, random), HttpHeaders.ACCEPT_ENCODING, "gzip");
+        }
+    },
+
+    /** The first request for an asset after the server starts, which always has to load it. */
+    COLD {
+        @Override
+        LoadTestRequest next(LoadTestTargets targets, Random random) {
+            return THRASH.next(targets, random);
+        }
+    };
+
+    /** Returns the next request of this kind. */
+    abstract LoadTestRequest next(LoadTestTargets targets, Random random);
+
+    /** Returns the name of the kind as it's written on the command line and in results, for example not-modified. */
+    String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    static RequestKind fromName(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+
+    private static String pick(List<String> paths, Random random) {
+        return paths.get(random.nextInt(paths.size()));
+    }
+}
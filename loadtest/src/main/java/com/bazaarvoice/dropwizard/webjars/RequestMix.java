@@ -0,0 +1,55 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * How often each kind of request is made, written as a comma separated list of kinds and their weights such as
+ * {@code hit:70,not-modified:20,not-found:10}.
+ */
+class RequestMix {
+    private final String spec;
+    private final List<RequestKind> kinds = Lists.newArrayList();
+    private final List<Integer> cumulativeWeights = Lists.newArrayList();
+    private int totalWeight;
+
+    RequestMix(String spec) {
+        this.spec = spec;
+        for (String part : Splitter.on(',').trimResults().omitEmptyStrings().split(spec)) {
+            int colon = part.indexOf(':');
+            RequestKind kind = RequestKind.fromName((colon >= 0) ? part.substring(0, colon) : part);
+            int weight = (colon >= 0) ? Integer.parseInt(part.substring(colon + 1)) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in request mix " + spec);
+            }
+
+            totalWeight += weight;
+            kinds.add(kind);
+            cumulativeWeights.add(totalWeight);
+        }
+
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("Empty request mix " + spec);
+        }
+    }
+
+    /** Pick the kind of the next request. */
+    RequestKind pick(Random random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; i < kinds.size(); i++) {
+            if (value < cumulativeWeights.get(i)) {
+                return kinds.get(i);
+            }
+        }
+
+        throw new AssertionError();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,40 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+/** The scenarios that a load test runs, each against a server of its own that starts with an empty cache. */
+enum Scenario {
+    /** Every request is for a hot asset that's already cached. */
+    HITS("hit"),
+
+    /** Every request revalidates a hot asset and gets a 304. */
+    NOT_MODIFIED("not-modified"),
+
+    /** A flood of requests for things that don't exist. */
+    NOT_FOUND("not-found"),
+
+    /** Requests for any asset, against a cache too small to hold them all. */
+    THRASH("thrash"),
+
+    /** Mostly hot assets, with some revalidation, some 404s and some cache misses, like a real site. */
+    MIXED("hit:70,not-modified:15,not-found:10,thrash:5"),
+
+    /**
+     * Every client asks for every asset once right after the server starts, so that every request is a miss and
+     * concurrent requests for the same asset race to load it.  The server is started from scratch a number of times.
+     */
+    COLD_START("cold");
+
+    final String mix;
+
+    Scenario(String mix) {
+        this.mix = mix;
+    }
+
+    /** Returns the name of the scenario as it's written on the command line and in results, for example cold-start. */
+    String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    static Scenario fromName(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,142 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latencies and response statuses of the requests made during a scenario.  Each client thread records into a
+ * result of its own, and the results of all of the threads are added together at the end.
+ * <p/>
+ * Latencies are recorded in nanoseconds in HdrHistogram histograms, and written out in microseconds.  Each histogram
+ * is also written out in HdrHistogram's compressed form, so that any percentile can be worked out from saved results
+ * later on.
+ */
+class ScenarioResult {
+    /** The longest latency that can be recorded, anything slower is recorded as this. */
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+    private final Histogram all = newHistogram();
+    private final Map<RequestKind, Histogram> byKind = Maps.newEnumMap(RequestKind.class);
+    private final SortedMap<Integer, Long> statuses = Maps.newTreeMap();
+    private long errors;
+    private long elapsedNanos;
+
+    /** Record a response, or an error if there was no response. */
+    void record(RequestKind kind, int status, long latencyNanos) {
+        long latency = Math.min(latencyNanos, HIGHEST_LATENCY);
+        all.recordValue(latency);
+        getHistogram(kind).recordValue(latency);
+
+        Long count = statuses.get(status);
+        statuses.put(status, (count != null) ? count + 1 : 1);
+    }
+
+    void recordError(RequestKind kind, long latencyNanos) {
+        long latency = Math.min(latencyNanos, HIGHEST_LATENCY);
+        all.recordValue(latency);
+        getHistogram(kind).recordValue(latency);
+        errors++;
+    }
+
+    void add(ScenarioResult other) {
+        all.add(other.all);
+        for (Map.Entry<RequestKind, Histogram> entry : other.byKind.entrySet()) {
+            getHistogram(entry.getKey()).add(entry.getValue());
+        }
+        for (Map.Entry<Integer, Long> entry : other.statuses.entrySet()) {
+            Long count = statuses.get(entry.getKey());
+            statuses.put(entry.getKey(), (count != null) ? count + entry.getValue() : entry.getValue());
+        }
+        errors += other.errors;
+    }
+
+    /** Account for time spent making requests, which is what throughput is measured against. */
+    void addElapsedNanos(long nanos) {
+        elapsedNanos += nanos;
+    }
+
+    double getThroughput() {
+        return (elapsedNanos > 0) ? all.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    /** Describe the result with maps, lists and numbers, ready to be written out as JSON. */
+    Map<String, Object> toJson() {
+        Map<String, Object> json = Maps.newLinkedHashMap();
+        json.put("requests", all.getTotalCount());
+        json.put("errors", errors);
+        json.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        json.put("throughput", getThroughput());
+
+        Map<String, Long> statusCounts = Maps.newLinkedHashMap();
+        for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+            statusCounts.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        json.put("statuses", statusCounts);
+        json.put("latency", toJson(all));
+
+        Map<String, Object> kinds = Maps.newLinkedHashMap();
+        for (Map.Entry<RequestKind, Histogram> entry : byKind.entrySet()) {
+            Map<String, Object> kind = Maps.newLinkedHashMap();
+            kind.put("requests", entry.getValue().getTotalCount());
+            kind.put("latency", toJson(entry.getValue()));
+            kinds.put(entry.getKey().getName(), kind);
+        }
+        json.put("kinds", kinds);
+        return json;
+    }
+
+    void print(String name, PrintStream out) {
+        out.printf("%-14s %10d requests %8d errors %12.1f req/s   ", name, all.getTotalCount(), errors,
+                getThroughput());
+        for (double percentile : PERCENTILES) {
+            out.printf("p%s %8.1fus   ", format(percentile), toMicros(all.getValueAtPercentile(percentile)));
+        }
+        out.printf("max %8.1fus%n", toMicros(all.getMaxValue()));
+    }
+
+    private Histogram getHistogram(RequestKind kind) {
+        Histogram histogram = byKind.get(kind);
+        if (histogram == null) {
+            histogram = newHistogram();
+            byKind.put(kind, histogram);
+        }
+
+        return histogram;
+    }
+
+    private static Map<String, Object> toJson(Histogram histogram) {
+        Map<String, Object> json = Maps.newLinkedHashMap();
+        json.put("mean", toMicros(histogram.getMean()));
+        for (double percentile : PERCENTILES) {
+            json.put("p" + format(percentile), toMicros(histogram.getValueAtPercentile(percentile)));
+        }
+        json.put("max", toMicros(histogram.getMaxValue()));
+
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        json.put("histogram", BaseEncoding.base64().encode(buffer.array(), 0, length));
+        return json;
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /** Format a percentile without a trailing .0, so that 99 is p99 and 99.9 is p99.9. */
+    private static String format(double percentile) {
+        return (percentile == Math.rint(percentile)) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
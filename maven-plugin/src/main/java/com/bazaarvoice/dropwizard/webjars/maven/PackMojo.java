@@ -0,0 +1,105 @@
+package com.bazaarvoice.dropwizard.webjars.maven;
+
+import com.bazaarvoice.dropwizard.webjars.AssetPackWriter;
+import com.bazaarvoice.dropwizard.webjars.WebJarConfiguration;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+/**
+ * Packs the assets of the WebJars in a project's runtime classpath into {@code META-INF/webjars/assets.pack} in its
+ * output directory.  Applications serve the assets of a pack without reading, hashing or compressing anything, as
+ * long as their configuration has the same groups, {@code gzip}, {@code gzipMinimumSize} and {@code preferMinified}
+ * settings as the ones the pack was written with.
+ *
+ * @goal pack
+ * @phase process-classes
+ * @requiresDependencyResolution runtime
+ * @threadSafe
+ */
+public class PackMojo extends AbstractMojo {
+    /**
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * Where the pack is written, it's put into the classpath of the application by being in here.
+     *
+     * @parameter default-value="${project.build.outputDirectory}"
+     * @required
+     */
+    private File outputDirectory;
+
+    /**
+     * The maven groups that WebJars are found in, the same as the groups given to the bundle.
+     *
+     * @parameter
+     */
+    private List<String> groups;
+
+    /** @parameter default-value="false" */
+    private boolean gzip;
+
+    /** @parameter default-value="256" */
+    private int gzipMinimumSize;
+
+    /** @parameter default-value="false" */
+    private boolean preferMinified;
+
+    /** @parameter default-value="false" property="webjars.pack.skip" */
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping WebJar asset pack");
+            return;
+        }
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(gzip);
+        configuration.setGzipMinimumSize(gzipMinimumSize);
+        configuration.setPreferMinified(preferMinified);
+
+        File file = new File(outputDirectory, AssetPackWriter.RESOURCE);
+        ClassLoader classLoader = createClassLoader();
+        try {
+            int count = new AssetPackWriter(groups, configuration).write(classLoader, file);
+            getLog().info("Packed " + count + " WebJar assets into " + file);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + file, e);
+        }
+    }
+
+    /** Create a classloader that only sees the project's runtime classpath, and not the plugin's own. */
+    private ClassLoader createClassLoader() throws MojoExecutionException {
+        List<String> elements;
+        try {
+            elements = project.getRuntimeClasspathElements();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Unable to resolve the runtime classpath", e);
+        }
+
+        URL[] urls = new URL[elements.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = new File(elements.get(i)).toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new MojoExecutionException("Invalid classpath element " + elements.get(i), e);
+            }
+        }
+
+        return new URLClassLoader(urls, null);
+    }
+}
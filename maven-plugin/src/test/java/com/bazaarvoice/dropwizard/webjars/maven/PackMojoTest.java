@@ -0,0 +1,73 @@
+package com.bazaarvoice.dropwizard.webjars.maven;
+
+import com.bazaarvoice.dropwizard.webjars.AssetPackWriter;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PackMojoTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final PackMojo mojo = new PackMojo();
+    private File outputDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        // A classpath with a single WebJar in it
+        File classes = folder.newFolder("classes");
+        write(new File(classes, "META-INF/maven/org.webjars/hello/pom.properties"), "version=1.0\n");
+        write(new File(classes, "META-INF/resources/webjars/hello/1.0/hello.txt"), "Hello World!");
+
+        MavenProject project = mock(MavenProject.class);
+        when(project.getRuntimeClasspathElements()).thenReturn(ImmutableList.of(classes.getPath()));
+
+        outputDirectory = folder.newFolder("output");
+        set("project", project);
+        set("outputDirectory", outputDirectory);
+        set("groups", ImmutableList.of("org.webjars"));
+        set("gzipMinimumSize", 256);
+    }
+
+    @Test
+    public void testPack() throws Exception {
+        mojo.execute();
+
+        File pack = new File(outputDirectory, AssetPackWriter.RESOURCE);
+        assertTrue(pack.isFile());
+        assertTrue(Files.toString(pack, Charsets.ISO_8859_1).contains("Hello World!"));
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        set("skip", true);
+        mojo.execute();
+
+        assertFalse(new File(outputDirectory, AssetPackWriter.RESOURCE).exists());
+    }
+
+    /** Set a parameter of the mojo the way Maven does. */
+    private void set(String name, Object value) throws Exception {
+        Field field = PackMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.createParentDirs(file);
+        Files.write(content, file, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The parts of an asset cache that don't depend on how it evicts assets: loading assets that aren't cached, so that
+ * concurrent requests for the same asset share a single load, and keeping statistics.  Subclasses only have to store
+ * and look up assets.
+ */
+abstract class AbstractAssetCache implements AssetCache {
+    private final CacheLoader<AssetId, Asset> loader;
+    private final ConcurrentMap<AssetId, FutureTask<Asset>> loading = Maps.newConcurrentMap();
+
+    private final Counter hits = new Counter();
+    private final Counter misses = new Counter();
+    private final Counter loadSuccesses = new Counter();
+    private final Counter loadFailures = new Counter();
+    private final Counter loadTime = new Counter();
+    private final Counter evictions = new Counter();
+
+    AbstractAssetCache(CacheLoader<AssetId, Asset> loader) {
+        this.loader = loader;
+    }
+
+    /** Returns the cached asset, or {@code null} if it isn't cached. */
+    protected abstract Asset lookup(AssetId id);
+
+    /** Add a newly loaded asset to the cache. */
+    protected abstract void store(AssetId id, Asset asset);
+
+    @Override
+    public Asset getIfPresent(AssetId id) {
+        Asset asset = lookup(id);
+        (asset != null ? hits : misses).increment(1);
+        return asset;
+    }
+
+    @Override
+    public Asset getUnchecked(AssetId id) {
+        Asset asset = lookup(id);
+        if (asset != null) {
+            hits.increment(1);
+            return asset;
+        }
+
+        misses.increment(1);
+        return load(id);
+    }
+
+    @Override
+    public Map<AssetId, Asset> getAll(Iterable<AssetId> ids) {
+        Map<AssetId, Asset> assets = Maps.newLinkedHashMap();
+        Set<AssetId> missing = Sets.newLinkedHashSet();
+        for (AssetId id : ids) {
+            Asset asset = lookup(id);
+            if (asset != null) {
+                assets.put(id, asset);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        hits.increment(assets.size());
+        misses.increment(missing.size());
+        if (missing.isEmpty()) {
+            return assets;
+        }
+
+        // Unlike single loads, bulk loads aren't shared with concurrent requests for the same assets
+        long start = System.nanoTime();
+        Map<AssetId, Asset> loaded;
+        try {
+            loaded = loader.loadAll(missing);
+            for (AssetId id : missing) {
+                if (loaded.get(id) == null) {
+                    throw new CacheLoader.InvalidCacheLoadException("Loader returned nothing for " + id);
+                }
+            }
+        } catch (Exception e) {
+            loadFailures.increment(1);
+            loadTime.increment(System.nanoTime() - start);
+            throw new UncheckedExecutionException(e);
+        }
+
+        for (Map.Entry<AssetId, Asset> entry : loaded.entrySet()) {
+            if (missing.contains(entry.getKey()) || lookup(entry.getKey()) == null) {
+                store(entry.getKey(), entry.getValue());
+            }
+        }
+        loadSuccesses.increment(1);
+        loadTime.increment(System.nanoTime() - start);
+
+        for (AssetId id : missing) {
+            assets.put(id, loaded.get(id));
+        }
+        return assets;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), loadTime.sum(),
+                evictions.sum());
+    }
+
+    /** Count an asset that was evicted to make room for others. */
+    protected void recordEviction() {
+        evictions.increment(1);
+    }
+
+    private Asset load(final AssetId id) {
+        FutureTask<Asset> task = loading.get(id);
+        if (task == null) {
+            FutureTask<Asset> newTask = new FutureTask<Asset>(new Callable<Asset>() {
+                @Override
+                public Asset call() throws Exception {
+                    // Another thread may have finished loading the asset since it was looked up
+                    Asset asset = lookup(id);
+                    return (asset != null) ? asset : loadAndStore(id);
+                }
+            });
+
+            task = loading.putIfAbsent(id, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    newTask.run();
+                } finally {
+                    loading.remove(id, newTask);
+                }
+            }
+        }
+
+        try {
+            return Uninterruptibles.getUninterruptibly(task);
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    private Asset loadAndStore(AssetId id) throws Exception {
+        long start = System.nanoTime();
+        Asset asset;
+        try {
+            asset = loader.load(id);
+            if (asset == null) {
+                throw new CacheLoader.InvalidCacheLoadException("Loader returned null for " + id);
+            }
+        } catch (Exception e) {
+            loadFailures.increment(1);
+            loadTime.increment(System.nanoTime() - start);
+            throw e;
+        }
+
+        store(id, asset);
+        loadSuccesses.increment(1);
+        loadTime.increment(System.nanoTime() - start);
+        return asset;
+    }
+
+    /**
+     * A counter spread over several cells, so that threads counting hits at the same time rarely touch the same one.
+     * Each cell is padded out to its own cache line.
+     */
+    private static class Counter {
+        private static final int PADDING = 8;
+        private static final int CELLS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+
+        private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+        void increment(long amount) {
+            int cell = (int) Thread.currentThread().getId() & (CELLS - 1);
+            cells.addAndGet(cell * PADDING, amount);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < CELLS; i++) {
+                sum += cells.get(i * PADDING);
+            }
+
+            return sum;
+        }
+    }
+}
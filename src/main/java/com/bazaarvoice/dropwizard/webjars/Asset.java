@@ -1,20 +1,129 @@
 package com.bazaarvoice.dropwizard.webjars;
 
 import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import com.google.common.net.MediaType;
+import org.eclipse.jetty.http.HttpFields;
 
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 class Asset {
-    public final byte[] bytes;
+    public final ByteBuffer bytes;
+    public final ByteBuffer gzipBytes;
     public final MediaType mediaType;
+    public final String version;
     public final String hash;
     public final long lastModifiedTime;
 
+    /** The Subresource Integrity value of the asset, or {@code null} until it's first asked for. */
+    private volatile String integrity;
+
+    /** The name of the source map of a minified asset, relative to the asset, or {@code null} if there isn't one. */
+    public final String sourceMap;
+
+    /** Whether the bytes of the asset are shared with an identical asset that was loaded before it. */
+    final boolean shared;
+
+    // The values of the response headers for this asset, formatted once so that serving the asset doesn't have to
+    public final String eTag;
+    public final String gzipETag;
+    public final String lastModified;
+    public final String contentType;
+    public final String characterEncoding;
+
     public Asset(byte[] bytes, MediaType mediaType) {
+        this(bytes, null, mediaType, null, 0, AssetStorage.HEAP);
+    }
+
+    public Asset(byte[] bytes, byte[] gzipBytes, MediaType mediaType, String version, long lastModifiedTime,
+                 AssetStorage storage) {
+        this(bytes, gzipBytes, mediaType, version, lastModifiedTime, storage, null);
+    }
+
+    public Asset(byte[] bytes, byte[] gzipBytes, MediaType mediaType, String version, long lastModifiedTime,
+                 AssetStorage storage, String sourceMap) {
+        this((bytes != null) ? storage.store(bytes) : null,
+                (gzipBytes != null) ? storage.store(gzipBytes) : null,
+                mediaType, version, lastModifiedTime,
+                (bytes != null) ? Hashing.murmur3_128().hashBytes(bytes).toString() : null,
+                null, sourceMap);
+    }
+
+    /**
+     * Create an asset whose bytes have already been stored and hashed, such as one read back from a disk cache.  The
+     * integrity value is {@code null} if it hasn't been computed yet.
+     */
+    Asset(ByteBuffer bytes, ByteBuffer gzipBytes, MediaType mediaType, String version, long lastModifiedTime,
+          String hash, String integrity, String sourceMap) {
+        this(bytes, gzipBytes, mediaType, version, lastModifiedTime, hash, integrity, sourceMap, false);
+    }
+
+    /** Create a copy of an asset whose bytes are shared with an identical asset. */
+    Asset(Asset asset, ByteBuffer bytes, ByteBuffer gzipBytes) {
+        this(bytes, gzipBytes, asset.mediaType, asset.version, asset.lastModifiedTime, asset.hash, asset.integrity,
+                asset.sourceMap, true);
+    }
+
+    private Asset(ByteBuffer bytes, ByteBuffer gzipBytes, MediaType mediaType, String version, long lastModifiedTime,
+                  String hash, String integrity, String sourceMap, boolean shared) {
         this.bytes = bytes;
+        this.gzipBytes = gzipBytes;
         this.mediaType = mediaType;
-        this.hash = (bytes != null) ? Hashing.murmur3_128().hashBytes(bytes).toString() : null;
-        this.lastModifiedTime = (new Date().getTime() / 1000) * 1000;  // Ignore milliseconds
+        this.version = version;
+        this.hash = hash;
+        this.lastModifiedTime = lastModifiedTime;
+        this.integrity = integrity;
+        this.sourceMap = sourceMap;
+        this.shared = shared;
+
+        this.eTag = (hash != null) ? '"' + hash + '"' : null;
+        this.gzipETag = (hash != null) ? '"' + hash + WebJarServlet.GZIP_ETAG_SUFFIX + '"' : null;
+        this.lastModified = HttpFields.formatDate(lastModifiedTime);
+        this.contentType = (mediaType != null) ? mediaType.toString() : null;
+        this.characterEncoding = (mediaType != null && mediaType.charset().isPresent())
+                ? mediaType.charset().get().toString()
+                : null;
+    }
+
+    /**
+     * Returns the Subresource Integrity value of the asset, containing both its SHA-256 and SHA-384 digests.  Only the
+     * manifest needs it, so it's computed the first time it's asked for rather than every time an asset is loaded.
+     */
+    public String getIntegrity() {
+        String integrity = this.integrity;
+        if (integrity == null && bytes != null) {
+            // Racing threads compute the same value, so it doesn't matter which one is kept
+            integrity = integrity(bytes);
+            this.integrity = integrity;
+        }
+
+        return integrity;
+    }
+
+    /** Returns the Subresource Integrity value of the asset if it has been computed, without computing it. */
+    String getComputedIntegrity() {
+        return integrity;
+    }
+
+    /**
+     * Compute the Subresource Integrity value of some bytes.  Browsers use the strongest digest they support, so the
+     * SHA-256 digest is only there for tools that don't understand SHA-384.
+     */
+    private static String integrity(ByteBuffer bytes) {
+        return "sha256-" + BaseEncoding.base64().encode(digest("SHA-256", bytes))
+                + " sha384-" + BaseEncoding.base64().encode(digest("SHA-384", bytes));
+    }
+
+    private static byte[] digest(String algorithm, ByteBuffer bytes) {
+        // Guava doesn't provide SHA-384, but every JVM is required to provide both
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            digest.update(bytes.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
     }
-}
\ No newline at end of file
+}
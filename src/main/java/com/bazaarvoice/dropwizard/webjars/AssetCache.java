@@ -0,0 +1,38 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheStats;
+
+import java.util.Map;
+
+/**
+ * The cache that {@link WebJarServlet} keeps loaded assets in.  Which implementation is used, and how big it is, is
+ * chosen by the {@link AssetCacheConfiguration}.
+ */
+interface AssetCache {
+    /** Returns the cached asset, or {@code null} if it hasn't been loaded.  Never loads the asset. */
+    Asset getIfPresent(AssetId id);
+
+    /**
+     * Returns the asset, loading it if it isn't cached.  Concurrent requests for the same asset share a single load.
+     * A failure to load the asset is thrown as an unchecked exception.
+     */
+    Asset getUnchecked(AssetId id);
+
+    /**
+     * Returns the assets, loading the ones that aren't cached with a single call to the loader's
+     * {@link com.google.common.cache.CacheLoader#loadAll}.  Any other assets the loader returns are cached as well.
+     * A failure to load the assets is thrown as an unchecked exception.
+     */
+    Map<AssetId, Asset> getAll(Iterable<AssetId> ids);
+
+    void invalidate(AssetId id);
+
+    /** Returns the number of assets in the cache. */
+    long size();
+
+    /** Returns the total weight of the assets in the cache, as the configured {@link AssetCacheWeigher} weighs them. */
+    long weight();
+
+    /** Returns the statistics of the cache, in the form that Guava reports them. */
+    CacheStats stats();
+}
@@ -0,0 +1,119 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.Maps;
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/** Settings for the cache that loaded assets are kept in. */
+public class AssetCacheConfiguration {
+    /** The kind of cache. */
+    @NotNull
+    @JsonProperty
+    private AssetCacheType type = AssetCacheType.GUAVA;
+
+    /** The total weight of the assets the cache can hold before it starts evicting them. */
+    @Min(0)
+    @JsonProperty
+    private long maximumWeight = 5 * 1024 * 1024;
+
+    /** How assets are weighed, either by their size in bytes or as one each. */
+    @NotNull
+    @JsonProperty
+    private AssetCacheWeigher weigher = AssetCacheWeigher.BYTES;
+
+    /**
+     * How long an asset can go without being asked for before it expires from a {@link AssetCacheType#GUAVA} cache.
+     * Assets never expire when this isn't set.
+     */
+    @JsonProperty
+    private Duration expireAfterAccess = Duration.minutes(5);
+
+    /**
+     * How long after an asset was loaded it's loaded again the next time it's asked for by a
+     * {@link AssetCacheType#GUAVA} cache.  When loads are bounded the stale asset is served while it's reloaded in
+     * the background.  Assets are never refreshed when this isn't set.
+     */
+    @JsonProperty
+    private Duration refreshAfterWrite = null;
+
+    /**
+     * Separate caches, by name, for some of the assets, each with a budget of its own or pinned so that its assets are
+     * never evicted.  An asset goes into the first partition it belongs to, and into the rest of the cache, with the
+     * maximum weight above, when it doesn't belong to any.  Partitions are of the same kind as the rest of the cache
+     * unless they're pinned.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Map<String, AssetCachePartitionConfiguration> partitions = Maps.newLinkedHashMap();
+
+    public AssetCacheType getType() {
+        return type;
+    }
+
+    public void setType(AssetCacheType type) {
+        this.type = type;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public AssetCacheWeigher getWeigher() {
+        return weigher;
+    }
+
+    public void setWeigher(AssetCacheWeigher weigher) {
+        this.weigher = weigher;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public void setExpireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    public Duration getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+    }
+
+    public Map<String, AssetCachePartitionConfiguration> getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(Map<String, AssetCachePartitionConfiguration> partitions) {
+        this.partitions = partitions;
+    }
+
+    /** Build a cache with these settings that loads assets with the given loader. */
+    AssetCache build(CacheLoader<AssetId, Asset> loader) {
+        return partitions.isEmpty() ? type.create(this, loader) : new PartitionedAssetCache(this, loader);
+    }
+
+    /** Returns the settings of the cache of a partition, which are these settings with the partition's budget. */
+    AssetCacheConfiguration forPartition(AssetCachePartitionConfiguration partition) {
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.setType(partition.isPinned() ? AssetCacheType.PRELOADED : type);
+        configuration.setMaximumWeight(partition.getMaximumWeight());
+        configuration.setWeigher(weigher);
+        configuration.setExpireAfterAccess(partition.isPinned() ? null : expireAfterAccess);
+        configuration.setRefreshAfterWrite(refreshAfterWrite);
+        return configuration;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Settings for a partition of the asset cache: a separate cache with a budget of its own for some of the assets, so
+ * that they neither push out nor get pushed out by the rest.  An asset belongs to the partition when its library is
+ * one of the partition's libraries and its extension is one of the partition's extensions.  Leaving either list empty
+ * matches any library or any extension, but not both.
+ */
+public class AssetCachePartitionConfiguration {
+    /** The libraries whose assets belong to the partition, for example {@code jquery}. */
+    @NotNull
+    @JsonProperty
+    private List<String> libraries = Lists.newArrayList();
+
+    /** The extensions of the assets that belong to the partition, without the dot, for example {@code map}. */
+    @NotNull
+    @JsonProperty
+    private List<String> extensions = Lists.newArrayList();
+
+    /** The total weight of the assets the partition can hold before it starts evicting them. */
+    @Min(0)
+    @JsonProperty
+    private long maximumWeight = 1024 * 1024;
+
+    /** Whether or not the partition's assets stay cached for good once loaded.  The maximum weight is ignored. */
+    @JsonProperty
+    private boolean pinned = false;
+
+    public List<String> getLibraries() {
+        return libraries;
+    }
+
+    public void setLibraries(List<String> libraries) {
+        this.libraries = libraries;
+    }
+
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    public void setExtensions(List<String> extensions) {
+        this.extensions = extensions;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    public void setPinned(boolean pinned) {
+        this.pinned = pinned;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "a cache partition must list libraries, extensions or both")
+    public boolean isSelective() {
+        return !libraries.isEmpty() || !extensions.isEmpty();
+    }
+}
@@ -0,0 +1,54 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/** The kinds of cache that loaded assets can be kept in. */
+public enum AssetCacheType {
+    /**
+     * Guava's cache, which evicts the least recently used assets and can also expire assets that haven't been asked
+     * for in a while.
+     */
+    GUAVA {
+        @Override
+        AssetCache create(AssetCacheConfiguration configuration, CacheLoader<AssetId, Asset> loader) {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                    .maximumWeight(configuration.getMaximumWeight());
+            if (configuration.getExpireAfterAccess() != null) {
+                builder.expireAfterAccess(configuration.getExpireAfterAccess().toMilliseconds(), TimeUnit.MILLISECONDS);
+            }
+            if (configuration.getRefreshAfterWrite() != null) {
+                builder.refreshAfterWrite(configuration.getRefreshAfterWrite().toMilliseconds(), TimeUnit.MILLISECONDS);
+            }
+
+            return new GuavaAssetCache(builder, configuration.getWeigher(), loader);
+        }
+    },
+
+    /**
+     * A cache that only keeps assets that are asked for more often than the ones they would replace, which copes far
+     * better than a least recently used cache with a small set of popular assets mixed with a long tail of rarely
+     * used ones.  Lookups never take a lock.  Assets don't expire.
+     */
+    TINY_LFU {
+        @Override
+        AssetCache create(AssetCacheConfiguration configuration, CacheLoader<AssetId, Asset> loader) {
+            return new TinyLfuAssetCache(configuration.getMaximumWeight(), configuration.getWeigher(), loader);
+        }
+    },
+
+    /**
+     * A concurrent map that never evicts anything, for applications that preload every asset they serve.  The maximum
+     * weight is ignored.
+     */
+    PRELOADED {
+        @Override
+        AssetCache create(AssetCacheConfiguration configuration, CacheLoader<AssetId, Asset> loader) {
+            return new PreloadedAssetCache(configuration.getWeigher(), loader);
+        }
+    };
+
+    abstract AssetCache create(AssetCacheConfiguration configuration, CacheLoader<AssetId, Asset> loader);
+}
@@ -0,0 +1,30 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+/** How much of an asset cache's maximum weight each asset uses up. */
+public enum AssetCacheWeigher {
+    /**
+     * Assets weigh the number of bytes they contain, including any compressed form of them.  An asset whose bytes are
+     * shared with an identical asset weighs them all the same, since the other asset can be evicted before it is.
+     */
+    BYTES {
+        @Override
+        int weigh(Asset asset) {
+            int weight = (asset.bytes != null) ? asset.bytes.remaining() : 0;
+            if (asset.gzipBytes != null) {
+                weight += asset.gzipBytes.remaining();
+            }
+
+            return weight;
+        }
+    },
+
+    /** Every asset weighs the same, so the maximum weight is the maximum number of assets. */
+    ENTRIES {
+        @Override
+        int weigh(Asset asset) {
+            return 1;
+        }
+    };
+
+    abstract int weigh(Asset asset);
+}
@@ -0,0 +1,186 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.net.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Combines several assets of the same media type into one, so that a page that includes lots of scripts or
+ * stylesheets can fetch them with a single request.  A combination is named by a query string listing the paths of
+ * its assets in order, such as {@code bootstrap/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css}, each of
+ * which is resolved exactly as it would be on its own.
+ * <p/>
+ * The assets themselves come from the asset cache, and combinations are kept in a cache of their own keyed by the
+ * assets they resolve to, so that differently escaped or versioned queries for the same assets share a combination.
+ * A combination's ETag is derived from the hashes of its assets rather than by hashing it again, and
+ * requests for a combination that is still being put together wait for it instead of combining it again.
+ */
+class AssetCombiner {
+    /**
+     * Returned for a combination that can't be made, either because it's empty, too big, has a malformed path or has
+     * mixed media types.
+     */
+    static final Asset INVALID = new Asset(null, null);
+
+    /** The most assets that a single combination can contain. */
+    static final int MAXIMUM_ASSETS = 25;
+
+    private static final Splitter SPLITTER = Splitter.on('&').omitEmptyStrings();
+    private static final byte[] SEPARATOR = "\n".getBytes(Charsets.UTF_8);
+    private static final byte[] SCRIPT_SEPARATOR = "\n;\n".getBytes(Charsets.UTF_8);
+
+    private final AssetCache cache;
+    private final AssetLoader loader;
+    private final Function<String, AssetId> resolver;
+    private final WebJarConfiguration configuration;
+    private final LoadingCache<List<AssetId>, Asset> combinations;
+
+    /**
+     * Create a combiner.  The resolver turns the path of an asset in a combination into the asset it refers to, or
+     * {@code null} if it doesn't refer to one.
+     */
+    AssetCombiner(AssetCache cache, AssetLoader loader, Function<String, AssetId> resolver,
+                  WebJarConfiguration configuration) {
+        this.cache = cache;
+        this.loader = loader;
+        this.resolver = resolver;
+        this.configuration = configuration;
+        this.combinations = CacheBuilder.newBuilder()
+                .maximumWeight(configuration.getComboMaximumWeight())
+                .weigher(new AssetWeigher(AssetCacheWeigher.BYTES))
+                .recordStats()
+                .build(new CacheLoader<List<AssetId>, Asset>() {
+                    @Override
+                    public Asset load(List<AssetId> ids) throws Exception {
+                        return combine(ids);
+                    }
+                });
+    }
+
+    /** Determine whether a combination is ready to be sent without putting anything together. */
+    boolean isCombined(String query) {
+        List<AssetId> ids = resolve(query);
+        return ids != null && !ids.contains(null) && combinations.getIfPresent(ids) != null;
+    }
+
+    /**
+     * Returns the combination named by a query string, {@link AssetLoader#NOT_FOUND} if any of its assets doesn't
+     * exist or {@link #INVALID} if it can't be made.  Only combinations that could be made are kept.
+     */
+    Asset get(String query) {
+        List<AssetId> ids = resolve(query);
+        if (ids == null) {
+            return INVALID;
+        }
+
+        if (ids.contains(null)) {
+            return AssetLoader.NOT_FOUND;
+        }
+
+        Asset combination = combinations.getUnchecked(ids);
+        if (combination == AssetLoader.NOT_FOUND || combination == INVALID) {
+            combinations.invalidate(ids);
+        }
+
+        return combination;
+    }
+
+    Cache<List<AssetId>, Asset> getCache() {
+        return combinations;
+    }
+
+    /**
+     * Resolve the paths in a query string to the assets they refer to.  Returns {@code null} if the query can't name a
+     * combination, or a list ending in {@code null} if one of its paths doesn't refer to an asset.
+     */
+    private List<AssetId> resolve(String query) {
+        List<String> paths = Lists.newArrayList(SPLITTER.split(query));
+        if (paths.isEmpty() || paths.size() > MAXIMUM_ASSETS) {
+            return null;
+        }
+
+        List<AssetId> ids = Lists.newArrayListWithCapacity(paths.size());
+        for (String path : paths) {
+            String decoded;
+            try {
+                decoded = URLDecoder.decode(path, Charsets.UTF_8.name());
+            } catch (IllegalArgumentException e) {
+                // A malformed escape, which the client has to fix rather than anything going wrong here
+                return null;
+            } catch (UnsupportedEncodingException e) {
+                throw Throwables.propagate(e);
+            }
+
+            AssetId id = resolver.apply(decoded);
+            ids.add(id);
+            if (id == null) {
+                return ids;
+            }
+        }
+
+        return ImmutableList.copyOf(ids);
+    }
+
+    private Asset combine(List<AssetId> ids) throws IOException {
+        List<Asset> assets = Lists.newArrayList();
+        for (AssetId id : ids) {
+            Asset asset = cache.getUnchecked(id);
+            if (asset == AssetLoader.NOT_FOUND) {
+                cache.invalidate(id);
+                return AssetLoader.NOT_FOUND;
+            }
+
+            if (!assets.isEmpty() && !asset.mediaType.withoutParameters().equals(
+                    assets.get(0).mediaType.withoutParameters())) {
+                return INVALID;
+            }
+
+            assets.add(asset);
+        }
+
+        // A script that leaves its last statement unterminated mustn't run into the next one
+        MediaType mediaType = assets.get(0).mediaType;
+        byte[] separator = mediaType.subtype().contains("javascript") ? SCRIPT_SEPARATOR : SEPARATOR;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        long lastModifiedTime = 0;
+        for (int i = 0; i < assets.size(); i++) {
+            Asset asset = assets.get(i);
+            if (i > 0) {
+                buffer.write(separator);
+            }
+
+            byte[] bytes = new byte[asset.bytes.remaining()];
+            asset.bytes.duplicate().get(bytes);
+            buffer.write(bytes);
+
+            hasher.putString(asset.hash, Charsets.UTF_8);
+            lastModifiedTime = Math.max(lastModifiedTime, asset.lastModifiedTime);
+        }
+
+        byte[] bytes = buffer.toByteArray();
+        // Clients can ask for any list of assets, so a combination isn't worth the time of the best compression
+        byte[] gzipBytes = loader.compress(bytes, mediaType, Deflater.DEFAULT_COMPRESSION);
+        AssetStorage storage = configuration.getStorage();
+        return new Asset(storage.store(bytes), (gzipBytes != null) ? storage.store(gzipBytes) : null, mediaType, null,
+                lastModifiedTime, hasher.hash().toString(), null, null);
+    }
+}
@@ -6,8 +6,16 @@ class AssetId {
     public final String library;
     public final String resource;
 
+    /** The version of the library explicitly asked for, or {@code null} for the version that's served by default. */
+    public final String version;
+
     public AssetId(String library, String resource) {
+        this(library, null, resource);
+    }
+
+    public AssetId(String library, String version, String resource) {
         this.library = library;
+        this.version = version;
         this.resource = resource;
     }
 
@@ -17,19 +25,25 @@ class AssetId {
         if (o == null || !(o instanceof AssetId)) return false;
 
         AssetId id = (AssetId) o;
-        return Objects.equal(library, id.library) && Objects.equal(resource, id.resource);
+        return Objects.equal(library, id.library) && Objects.equal(resource, id.resource)
+                && Objects.equal(version, id.version);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(library, resource);
+        // Written out instead of using Objects.hashCode so that looking up an asset doesn't allocate a varargs array
+        int result = (library != null) ? library.hashCode() : 0;
+        result = 31 * result + ((resource != null) ? resource.hashCode() : 0);
+        result = 31 * result + ((version != null) ? version.hashCode() : 0);
+        return result;
     }
 
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
                 .add("library", library)
+                .add("version", version)
                 .add("resource", resource)
                 .toString();
     }
-}
\ No newline at end of file
+}
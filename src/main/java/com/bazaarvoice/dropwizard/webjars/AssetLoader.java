@@ -1,38 +1,118 @@
 package com.bazaarvoice.dropwizard.webjars;
 
 import com.google.common.base.Charsets;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
 import com.google.common.io.Resources;
 import com.google.common.net.MediaType;
 import org.eclipse.jetty.http.MimeTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
 
 /** Locates an loads a particular WebJar asset from the classpath. */
 class AssetLoader extends CacheLoader<AssetId, Asset> {
     public static final Asset NOT_FOUND = new Asset(null, null);
 
+    private static final Logger LOG = LoggerFactory.getLogger(AssetLoader.class);
+
     // For determining content type and content encoding
     private static final MimeTypes MIME_TYPES = new MimeTypes();
     private static final MediaType DEFAULT_MEDIA_TYPE = MediaType.HTML_UTF_8;
     private static final Charset DEFAULT_CHARSET = Charsets.UTF_8;
 
-    private final LoadingCache<String, String> versionCache;
+    // For finding the minified variants of resources
+    private static final String[] MINIFIABLE_EXTENSIONS = { ".js", ".css" };
+    private static final String MINIFIED_SUFFIX = ".min";
+
+    /** The id of the zip extra field that holds an entry's modification time in UTC. */
+    private static final int EXTENDED_TIMESTAMP = 0x5455;
+
+    private final VersionRegistry versions;
+    private final WebJarIndex index;
+    private final WebJarConfiguration configuration;
+
+    /**
+     * Which file each resource is actually served from when minified variants are preferred, keyed by the path of the
+     * resource.  Only resources that exist are remembered, so the map can't grow beyond the contents of the classpath.
+     */
+    private final ConcurrentMap<String, Variant> variants = Maps.newConcurrentMap();
+
+    private final DiskCache diskCache;
+
+    /** The assets prepared at build time, see {@link AssetPack}. */
+    private final AssetPack pack;
+
+    /** Whether each library in the pack is served from it, see {@link #isPacked(String)}. */
+    private final ConcurrentMap<String, Boolean> packedLibraries = Maps.newConcurrentMap();
+
+    /** The bytes of every loaded asset, when identical assets share them. */
+    private final ContentStore contents;
+
+    /** The libraries whose jars have already been read in bulk, see {@link #loadAll}. */
+    private final ConcurrentMap<String, Boolean> bulkLoaded = Maps.newConcurrentMap();
+
+    AssetLoader(VersionLoader versionLoader, WebJarIndex index, WebJarConfiguration configuration) {
+        this(versionLoader, index, null, configuration);
+    }
 
-    AssetLoader(CacheLoader<String, String> versionLoader) {
-        versionCache = CacheBuilder.newBuilder()
-                .maximumSize(10)
-                .build(versionLoader);
+    AssetLoader(VersionLoader versionLoader, WebJarIndex index, AssetPack pack, WebJarConfiguration configuration) {
+        this.versions = new VersionRegistry(versionLoader);
+        this.index = index;
+        this.pack = pack;
+        this.configuration = configuration;
+        this.diskCache = (configuration.getDiskCacheDirectory() != null)
+                ? new DiskCache(new File(configuration.getDiskCacheDirectory()), configuration)
+                : null;
+        this.contents = configuration.isDeduplicate() ? new ContentStore() : null;
     }
 
     @Override
     public Asset load(AssetId id) throws Exception {
-        String version = versionCache.getUnchecked(id.library);
-        if (VersionLoader.NOT_FOUND.equals(version)) {
+        if (isPacked(id)) {
+            // Everything about the resolved version of a packed library was worked out when the pack was written
+            Asset asset = pack.get(id.library, id.resource);
+            return (asset != null) ? intern(asset) : NOT_FOUND;
+        }
+
+        if (index != null) {
+            // The index already knows exactly where every resource lives, so there's no need to search for it
+            String directory = (id.version != null)
+                    ? index.getResourceVersion(id.library, id.version, id.resource)
+                    : index.getResourceVersion(id.library, id.resource);
+            return (directory != null) ? loadAsset(id.library, directory, id.resource) : NOT_FOUND;
+        }
+
+        LibraryVersions libraryVersions = versions.get(id.library);
+        if (libraryVersions == null) {
             return NOT_FOUND;
         }
 
@@ -52,22 +132,17 @@ class AssetLoader extends CacheLoader<AssetId, Asset> {
         // should be stripped off or not.  A reasonable heuristic however is going to be to just keep trying over
         // and over starting with the most specific version number, then stripping a suffix off at a time until
         // there are no more suffixes and the right version number is determined.
+        String version = (id.version != null) ? id.version : libraryVersions.getDirectory();
         do {
-            String path = String.format("META-INF/resources/webjars/%s/%s/%s", id.library, version, id.resource);
-
-            try {
-                URL resource = Resources.getResource(path);
-
-                // Determine the media type of this resource
-                MediaType mediaType = getMediaType(path);
-
-                // We know that this version was valid.  Update the version cache to make sure that we remember it
-                // for next time around.
-                versionCache.put(id.library, version);
+            Asset asset = loadAsset(id.library, version, id.resource);
+            if (asset != NOT_FOUND) {
+                // We know that this version was valid.  Remember it so that the default version's other assets start
+                // looking in the right place.
+                if (id.version == null) {
+                    libraryVersions.setDirectory(version);
+                }
 
-                return new Asset(ByteStreams.toByteArray(resource.openStream()), mediaType);
-            } catch (IllegalArgumentException e) {
-                // ignored
+                return asset;
             }
 
             // Trim a suffix off of the version number
@@ -81,6 +156,445 @@ class AssetLoader extends CacheLoader<AssetId, Asset> {
         while (true);
     }
 
+    /**
+     * Load assets, reading the jar of a library in bulk the first time one of its assets is loaded.  A single pass over
+     * the jar reads every other small resource in the same version directory, which are returned as well so that they
+     * are cached along with the assets that were asked for.  That turns the burst of misses a page causes when it
+     * starts using a library into one read of the library's jar, instead of a separate lookup and stream for each one.
+     * If the jar can't be read in bulk, the assets that were asked for are still returned and the next load tries again.
+     */
+    @Override
+    public Map<AssetId, Asset> loadAll(Iterable<? extends AssetId> ids) throws Exception {
+        Map<AssetId, Asset> assets = Maps.newHashMap();
+        for (AssetId id : ids) {
+            Asset asset = load(id);
+            assets.put(id, asset);
+
+            if (asset != NOT_FOUND && isBulkLoadable(id) && bulkLoaded.putIfAbsent(id.library, true) == null) {
+                Map<String, Asset> others;
+                try {
+                    others = readLibrary(id.library, asset.version, id.resource);
+                } catch (Exception e) {
+                    LOG.warn("Unable to read the assets of {} in bulk", id.library, e);
+                    bulkLoaded.remove(id.library);
+                    continue;
+                }
+
+                for (Map.Entry<String, Asset> entry : others.entrySet()) {
+                    AssetId other = new AssetId(id.library, entry.getKey());
+                    if (!assets.containsKey(other)) {
+                        assets.put(other, entry.getValue());
+                    }
+                }
+            }
+        }
+
+        return assets;
+    }
+
+    /**
+     * Determine whether loading an asset should read the rest of its library in bulk, which is only the case for the
+     * first asset loaded from the resolved version of each library.
+     */
+    boolean isBulkLoadable(AssetId id) {
+        return configuration.isBulkLoad() && id.version == null && !bulkLoaded.containsKey(id.library)
+                && !isPacked(id.library);
+    }
+
+    /** Determine whether an asset is served from the asset pack rather than loaded from the classpath. */
+    private boolean isPacked(AssetId id) {
+        return isPacked(id.library) && (id.version == null || id.version.equals(pack.getVersion(id.library)));
+    }
+
+    /**
+     * Determine whether a library is served from the asset pack, which is only the case when the pack has the same
+     * version of it that the classpath resolves to.  A pack left over from a build with different dependencies mustn't
+     * serve stale assets under the wrong version.
+     */
+    private boolean isPacked(String library) {
+        if (pack == null || !pack.contains(library)) {
+            return false;
+        }
+
+        Boolean packed = packedLibraries.get(library);
+        if (packed == null) {
+            String version = getClasspathVersion(library);
+            packed = pack.getVersion(library).equals(version);
+            if (!packed) {
+                LOG.warn("Not serving {} from the asset pack, it has version {} but the classpath has {}",
+                        library, pack.getVersion(library), version);
+            }
+            packedLibraries.put(library, packed);
+        }
+
+        return packed;
+    }
+
+    /**
+     * Returns the version of a library according to its WebJar, or {@code null} if the library can't be found.  This
+     * is the version that's served when a request doesn't ask for a particular one.
+     */
+    String getVersion(String library) {
+        return isPacked(library) ? pack.getVersion(library) : getClasspathVersion(library);
+    }
+
+    /** Returns the version of a library according to the WebJars in the classpath, ignoring the asset pack. */
+    private String getClasspathVersion(String library) {
+        if (index != null) {
+            return index.getVersion(library);
+        }
+
+        LibraryVersions libraryVersions = versions.get(library);
+        return (libraryVersions != null) ? libraryVersions.version : null;
+    }
+
+    /**
+     * Returns every version of a library present in the classpath, starting with the one returned by
+     * {@link #getVersion}.  The set is empty if the library can't be found.
+     */
+    Set<String> getVersions(String library) {
+        if (isPacked(library)) {
+            return pack.getVersions(library);
+        }
+
+        if (index != null) {
+            return index.getVersions(library);
+        }
+
+        LibraryVersions libraryVersions = versions.get(library);
+        return (libraryVersions != null) ? libraryVersions.versions : ImmutableSet.<String>of();
+    }
+
+    /** Returns the registry of library versions, so that its size can be reported. */
+    VersionRegistry getVersionRegistry() {
+        return versions;
+    }
+
+    /** Returns the store of asset bytes, or {@code null} if identical assets don't share their bytes. */
+    ContentStore getContentStore() {
+        return contents;
+    }
+
+    /** Returns the cache of assets on disk, or {@code null} if there isn't one. */
+    DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Load an asset from a version directory of a library, going to the disk cache first if there is one.  The asset
+     * shares its bytes with any identical asset that has already been loaded.
+     */
+    private Asset loadAsset(String library, String version, String name) throws IOException {
+        Asset asset = (diskCache != null) ? diskCache.get(library, version, name) : null;
+        if (asset == null) {
+            asset = readAsset(library, version, name);
+            if (diskCache != null && asset != NOT_FOUND) {
+                diskCache.put(library, version, name, asset);
+            }
+        }
+
+        return intern(asset);
+    }
+
+    private Asset intern(Asset asset) {
+        return (contents != null) ? contents.intern(asset) : asset;
+    }
+
+    private Asset readAsset(String library, String version, String name) throws IOException {
+        String path = String.format("META-INF/resources/webjars/%s/%s/%s", library, version, name);
+
+        if (configuration.isPreferMinified()) {
+            Variant variant = getVariant(path);
+            if (variant == null) {
+                return NOT_FOUND;
+            }
+
+            return loadResource(variant.path, version, variant.sourceMap);
+        }
+
+        return loadResource(path, version, null);
+    }
+
+    /**
+     * Read the small resources of a version directory of a library with a single pass over the jar that contains the
+     * given resource, skipping that resource itself.  Resources are only read up to the configured size and count, and
+     * nothing is read if the library isn't in a jar.  Returns the assets keyed by the name of their resource.
+     */
+    Map<String, Asset> readLibrary(String library, String version, String name) throws IOException {
+        String prefix = String.format("META-INF/resources/webjars/%s/%s/", library, version);
+        URL url = findResource(prefix + name);
+        URLConnection connection = (url != null) ? url.openConnection() : null;
+        if (!(connection instanceof JarURLConnection)) {
+            return ImmutableMap.of();
+        }
+
+        // The jar file is shared with the rest of the classloader's lookups, so it isn't closed here
+        JarFile jar = ((JarURLConnection) connection).getJarFile();
+        List<String> paths = Lists.newArrayList();
+        Map<String, byte[]> contents = Maps.newHashMap();
+        Map<String, Long> times = Maps.newHashMap();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (entry.isDirectory() || !entry.getName().startsWith(prefix) || entry.getName().equals(prefix + name)) {
+                continue;
+            }
+
+            paths.add(entry.getName());
+            if (entry.getSize() < 0 || entry.getSize() > configuration.getBulkLoadMaximumSize()
+                    || contents.size() >= configuration.getBulkLoadMaximumCount()) {
+                continue;
+            }
+
+            Closer closer = Closer.create();
+            try {
+                contents.put(entry.getName(), ByteStreams.toByteArray(closer.register(jar.getInputStream(entry))));
+                times.put(entry.getName(), truncateTime(getEntryTime(entry)));
+            } catch (Throwable t) {
+                throw closer.rethrow(t);
+            } finally {
+                closer.close();
+            }
+        }
+
+        // Minified siblings are found among the entries that were just listed rather than by asking the classloader
+        Set<String> names = Sets.newHashSet(paths);
+        names.add(prefix + name);
+
+        Map<String, Asset> assets = Maps.newHashMap();
+        for (String path : paths) {
+            // A resource is only loaded if the file it's served from was read, anything else is left to be loaded
+            // normally.  That means a large script can still come along as its small minified sibling.
+            Variant variant = configuration.isPreferMinified()
+                    ? getVariant(path, Predicates.in(names))
+                    : new Variant(path, null);
+            if (!contents.containsKey(variant.path)) {
+                continue;
+            }
+
+            String resource = path.substring(prefix.length());
+            Asset asset = createAsset(variant.path, contents.get(variant.path), times.get(variant.path), version,
+                    variant.sourceMap);
+            if (diskCache != null) {
+                diskCache.put(library, version, resource, asset);
+            }
+            assets.put(resource, intern(asset));
+        }
+
+        LOG.debug("Read {} assets of {} in one pass over {}", assets.size(), library, jar.getName());
+        return assets;
+    }
+
+    private Asset loadResource(String path, String version, String sourceMap) throws IOException {
+        URL resource = findResource(path);
+        if (resource == null) {
+            return NOT_FOUND;
+        }
+
+        URLConnection connection = resource.openConnection();
+        long lastModifiedTime = getLastModifiedTime(connection);
+
+        byte[] bytes;
+        Closer closer = Closer.create();
+        try {
+            bytes = ByteStreams.toByteArray(closer.register(connection.getInputStream()));
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+
+        return createAsset(path, bytes, lastModifiedTime, version, sourceMap);
+    }
+
+    private Asset createAsset(String path, byte[] bytes, long lastModifiedTime, String version, String sourceMap)
+            throws IOException {
+        MediaType mediaType = getMediaType(path);
+        return new Asset(bytes, compress(bytes, mediaType), mediaType, version, lastModifiedTime,
+                configuration.getStorage(), sourceMap);
+    }
+
+    /**
+     * Decide which file a resource should be served from.  Scripts and stylesheets are served from their minified
+     * sibling when the WebJar has one next to them, along with the sibling's source map if there is one.  The decision
+     * is remembered, so after the first time loading the resource only has to look up the file it's served from.
+     * Returns {@code null} if the resource doesn't exist.
+     */
+    private Variant getVariant(String path) {
+        Variant variant = variants.get(path);
+        if (variant != null) {
+            return variant;
+        }
+
+        if (findResource(path) == null) {
+            return null;
+        }
+
+        variant = getVariant(path, ON_CLASSPATH);
+        Variant existing = variants.putIfAbsent(path, variant);
+        return (existing != null) ? existing : variant;
+    }
+
+    /** Work out which file a resource that exists is served from, given which other files exist alongside it. */
+    private static Variant getVariant(String path, Predicate<String> exists) {
+        String minified = getMinifiedPath(path);
+        if (minified == null || !exists.apply(minified)) {
+            return new Variant(path, null);
+        }
+
+        // Source maps are either named after the minified file or after it without its extension
+        String sourceMap = null;
+        for (String candidate : new String[] { minified + ".map",
+                minified.substring(0, minified.lastIndexOf('.')) + ".map" }) {
+            if (exists.apply(candidate)) {
+                sourceMap = candidate.substring(candidate.lastIndexOf('/') + 1);
+                break;
+            }
+        }
+
+        return new Variant(minified, sourceMap);
+    }
+
+    /**
+     * Returns the path of the minified sibling of a script or stylesheet, or {@code null} if the resource isn't one or
+     * is already minified.
+     */
+    private static String getMinifiedPath(String path) {
+        for (String extension : MINIFIABLE_EXTENSIONS) {
+            if (path.endsWith(extension) && !path.endsWith(MINIFIED_SUFFIX + extension)) {
+                return path.substring(0, path.length() - extension.length()) + MINIFIED_SUFFIX + extension;
+            }
+        }
+
+        return null;
+    }
+
+    private static final Predicate<String> ON_CLASSPATH = new Predicate<String>() {
+        @Override
+        public boolean apply(String path) {
+            return findResource(path) != null;
+        }
+    };
+
+    private static URL findResource(String path) {
+        try {
+            return Resources.getResource(path);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Determine when a resource was last modified.  For resources inside of a jar file this is the time recorded in
+     * the jar entry, which stays the same no matter how many times the asset is loaded or how many servers load it.
+     */
+    private static long getLastModifiedTime(URLConnection connection) throws IOException {
+        long time;
+        if (connection instanceof JarURLConnection) {
+            time = getEntryTime(((JarURLConnection) connection).getJarEntry());
+        } else {
+            time = connection.getLastModified();
+        }
+
+        return truncateTime(time);
+    }
+
+    /**
+     * Determine when a jar entry was last modified, the same way no matter which timezone the JVM is in.  Entries only
+     * have a DOS timestamp, with no timezone, unless the jar was written with extended timestamps.  The DOS timestamp
+     * is read as if it were in the default timezone, so that offset is undone to treat it as UTC instead.
+     */
+    static long getEntryTime(ZipEntry entry) {
+        long time = getExtendedTime(entry.getExtra());
+        if (time != -1) {
+            return time;
+        }
+
+        time = entry.getTime();
+        return (time != -1) ? time + TimeZone.getDefault().getOffset(time) : -1;
+    }
+
+    /** Returns the UTC modification time in an extended timestamp extra field, or -1 if there isn't one. */
+    private static long getExtendedTime(byte[] extra) {
+        if (extra == null) {
+            return -1;
+        }
+
+        int i = 0;
+        while (i + 4 <= extra.length) {
+            int id = (extra[i] & 0xff) | (extra[i + 1] & 0xff) << 8;
+            int size = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+            i += 4;
+            if (id == EXTENDED_TIMESTAMP && size >= 5 && i + 5 <= extra.length && (extra[i] & 1) != 0) {
+                long seconds = (extra[i + 1] & 0xffL) | (extra[i + 2] & 0xffL) << 8 | (extra[i + 3] & 0xffL) << 16
+                        | (extra[i + 4] & 0xffL) << 24;
+                return TimeUnit.SECONDS.toMillis(seconds);
+            }
+            i += size;
+        }
+
+        return -1;
+    }
+
+    private static long truncateTime(long time) {
+        // Not every kind of resource knows when it was modified, fall back to now
+        if (time <= 0) {
+            time = System.currentTimeMillis();
+        }
+
+        return (time / 1000) * 1000;  // Ignore milliseconds
+    }
+
+    /**
+     * Describe the settings that change how assets are loaded, so that assets prepared ahead of time with different
+     * settings aren't served by mistake.
+     */
+    static String getSettings(WebJarConfiguration configuration) {
+        return "gzip=" + configuration.isGzip()
+                + ",gzipMinimumSize=" + configuration.getGzipMinimumSize()
+                + ",preferMinified=" + configuration.isPreferMinified();
+    }
+
+    /**
+     * Gzip the bytes of an asset so that the compressed form can be served to clients that accept it without having
+     * to compress it again on every request.  Returns {@code null} if the asset shouldn't be served compressed.
+     */
+    byte[] compress(byte[] bytes, MediaType mediaType) throws IOException {
+        // This only happens once per asset, so it's worth spending the extra time to get the best compression
+        return compress(bytes, mediaType, Deflater.BEST_COMPRESSION);
+    }
+
+    /** Gzip the bytes of an asset at the given {@link Deflater} compression level. */
+    byte[] compress(byte[] bytes, MediaType mediaType, int level) throws IOException {
+        if (!configuration.isGzip() || bytes.length < configuration.getGzipMinimumSize() || !isCompressible(mediaType)) {
+            return null;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 2);
+        Closer closer = Closer.create();
+        try {
+            closer.register(new LeveledGZIPOutputStream(buffer, level)).write(bytes);
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+
+        // Don't bother keeping the compressed form around if it didn't actually save anything
+        byte[] compressed = buffer.toByteArray();
+        return (compressed.length < bytes.length) ? compressed : null;
+    }
+
+    private static boolean isCompressible(MediaType mediaType) {
+        if (mediaType.is(MediaType.ANY_TEXT_TYPE)) {
+            return true;
+        }
+
+        // Things like application/javascript, application/json and image/svg+xml are all text under the covers
+        String subtype = mediaType.subtype();
+        return subtype.contains("javascript") || subtype.contains("json") || subtype.contains("xml");
+    }
+
     private MediaType getMediaType(String path) {
         String mimeType = MIME_TYPES.getMimeByExtension(path);
         if (mimeType == null) {
@@ -100,4 +614,23 @@ class AssetLoader extends CacheLoader<AssetId, Asset> {
 
         return mediaType;
     }
-}
\ No newline at end of file
+
+    /** A gzip stream that compresses at the given {@link Deflater} level rather than the default one. */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+
+    /** The file a resource is served from, and the name of its source map if it has one. */
+    private static class Variant {
+        final String path;
+        final String sourceMap;
+
+        Variant(String path, String sourceMap) {
+            this.path = path;
+            this.sourceMap = sourceMap;
+        }
+    }
+}
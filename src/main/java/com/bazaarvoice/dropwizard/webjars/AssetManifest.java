@@ -0,0 +1,128 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.net.MediaType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSON description of the assets that can be served: the resolved version of each library along with the size,
+ * content type and Subresource Integrity value of each of its resources.  Describing a library means loading every one
+ * of its assets, so each library is only described the first time it's asked for and its description is kept from
+ * then on.  The manifest of every library is put together from those descriptions.
+ */
+class AssetManifest {
+    /** The name the manifest is served under, relative to {@link WebJarServlet#URL_PREFIX}. */
+    static final String NAME = "manifest.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Supplier<WebJarIndex> index;
+    private final AssetCache cache;
+    private final AssetLoader loader;
+
+    private final ConcurrentMap<String, Map<String, Object>> descriptions = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Asset> libraries = Maps.newConcurrentMap();
+    private volatile Asset manifest;
+
+    AssetManifest(Supplier<WebJarIndex> index, AssetCache cache, AssetLoader loader) {
+        this.index = index;
+        this.cache = cache;
+        this.loader = loader;
+    }
+
+    /** Determine whether the manifest of a library, or of every library if it's {@code null}, is ready to be sent. */
+    boolean isBuilt(String library) {
+        return (library != null) ? libraries.containsKey(library) : manifest != null;
+    }
+
+    /** Returns the manifest of every library. */
+    Asset get() throws IOException {
+        Asset json = manifest;
+        if (json == null) {
+            Map<String, Object> all = Maps.newTreeMap();
+            for (String library : index.get().getLibraries()) {
+                all.put(library, describe(library));
+            }
+
+            json = manifest = render(all);
+        }
+
+        return json;
+    }
+
+    /** Returns the manifest of a single library, or {@code null} if the library doesn't exist. */
+    Asset get(String library) throws IOException {
+        Asset json = libraries.get(library);
+        if (json == null) {
+            if (!index.get().getLibraries().contains(library)) {
+                return null;
+            }
+
+            json = render(describe(library));
+            Asset existing = libraries.putIfAbsent(library, json);
+            if (existing != null) {
+                json = existing;
+            }
+        }
+
+        return json;
+    }
+
+    private Map<String, Object> describe(String library) throws IOException {
+        Map<String, Object> description = descriptions.get(library);
+        if (description != null) {
+            return description;
+        }
+
+        Map<String, Object> resources = Maps.newTreeMap();
+        for (String resource : index.get().getResources(library)) {
+            Asset asset = load(new AssetId(library, resource));
+            if (asset == AssetLoader.NOT_FOUND) {
+                continue;
+            }
+
+            Map<String, Object> entry = Maps.newLinkedHashMap();
+            entry.put("size", asset.bytes.remaining());
+            entry.put("contentType", asset.contentType);
+            entry.put("integrity", asset.getIntegrity());
+            resources.put(resource, entry);
+        }
+
+        description = Maps.newLinkedHashMap();
+        description.put("version", index.get().getVersion(library));
+        description.put("resources", resources);
+
+        Map<String, Object> existing = descriptions.putIfAbsent(library, description);
+        return (existing != null) ? existing : description;
+    }
+
+    /**
+     * Load an asset that is being described.  Cached assets are used as they are, but the rest are loaded without
+     * being cached so that describing a library doesn't push the assets that are actually being requested out of the
+     * cache.
+     */
+    private Asset load(AssetId id) throws IOException {
+        Asset asset = cache.getIfPresent(id);
+        if (asset != null) {
+            return asset;
+        }
+
+        try {
+            return loader.load(id);
+        } catch (Exception e) {
+            Throwables.propagateIfInstanceOf(e, IOException.class);
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static Asset render(Map<String, Object> value) throws IOException {
+        return new Asset(MAPPER.writeValueAsBytes(value), null, MediaType.JSON_UTF_8, null, System.currentTimeMillis(),
+                AssetStorage.HEAP);
+    }
+}
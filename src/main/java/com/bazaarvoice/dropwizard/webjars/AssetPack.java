@@ -0,0 +1,258 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import com.google.common.net.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The assets of the WebJars in the classpath, prepared at build time by {@link AssetPackWriter} so that they can be
+ * served without reading, hashing or compressing anything when the application runs.  A pack is a single resource
+ * holding an index of the assets of the resolved version of every library, followed by the bytes of all of them, both
+ * plain and gzipped.  The pack is memory mapped, after being copied out to a temporary file when it's inside of a jar,
+ * and the bytes of every asset are a slice of that one buffer, so a pack costs address space rather than heap.
+ * <p/>
+ * A pack is only used if it was written for the same groups and with the same settings that change how assets are
+ * loaded, otherwise it's ignored and assets are loaded from the classpath as usual.
+ */
+class AssetPack {
+    /** Identifies a pack written in this format, change it whenever the format changes. */
+    static final int MAGIC = 0x574a5001;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AssetPack.class);
+
+    private final Map<String, Library> libraries;
+    private final ByteBuffer body;
+
+    private AssetPack(Map<String, Library> libraries, ByteBuffer body) {
+        this.libraries = libraries;
+        this.body = body;
+    }
+
+    /**
+     * Find the pack in the classpath and read it.  Returns {@code null} if there isn't one, or if it can't be used
+     * with the given groups and configuration.
+     */
+    static AssetPack load(Iterable<String> groups, WebJarConfiguration configuration) {
+        URL url;
+        try {
+            url = Resources.getResource(AssetPackWriter.RESOURCE);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        try {
+            AssetPack pack = read(url, getSettings(groups, configuration));
+            if (pack == null) {
+                LOG.warn("Ignoring asset pack {}, it was written for different groups or settings", url);
+            } else {
+                LOG.info("Serving the assets of {} libraries from asset pack {}", pack.libraries.size(), url);
+            }
+            return pack;
+        } catch (IOException e) {
+            LOG.warn("Unable to read asset pack {}", url, e);
+            return null;
+        }
+    }
+
+    /** Read a pack.  Returns {@code null} if it wasn't written in this format or with the given settings. */
+    static AssetPack read(URL url, String settings) throws IOException {
+        ByteBuffer buffer;
+        File file = toFile(url);
+        if (file != null) {
+            buffer = map(file);
+        } else {
+            // Reading the pack out of its jar would put every asset in it on the heap, so it's mapped from a copy
+            File copy = File.createTempFile("webjars-", ".pack");
+            try {
+                Resources.asByteSource(url).copyTo(Files.asByteSink(copy));
+                buffer = map(copy);
+            } finally {
+                // The mapping outlives the file where the file system allows it, otherwise it goes when the JVM exits
+                if (!copy.delete()) {
+                    copy.deleteOnExit();
+                }
+            }
+        }
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            return null;
+        }
+
+        int headerLength = buffer.getInt();
+        if (headerLength < 0 || headerLength > buffer.remaining()) {
+            return null;
+        }
+
+        byte[] header = new byte[headerLength];
+        buffer.get(header);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        if (!settings.equals(in.readUTF())) {
+            return null;
+        }
+
+        ByteBuffer body = buffer.slice();
+        ImmutableMap.Builder<String, Library> libraries = ImmutableMap.builder();
+        int libraryCount = in.readInt();
+        for (int i = 0; i < libraryCount; i++) {
+            String library = in.readUTF();
+
+            ImmutableSet.Builder<String> versions = ImmutableSet.builder();
+            int versionCount = in.readInt();
+            for (int j = 0; j < versionCount; j++) {
+                versions.add(in.readUTF());
+            }
+
+            ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+            int entryCount = in.readInt();
+            for (int j = 0; j < entryCount; j++) {
+                String resource = in.readUTF();
+                Entry entry = new Entry();
+                entry.lastModifiedTime = in.readLong();
+                entry.mediaType = MediaType.parse(in.readUTF());
+                entry.version = in.readUTF();
+                entry.hash = in.readUTF();
+                entry.integrity = in.readUTF();
+                entry.sourceMap = in.readBoolean() ? in.readUTF() : null;
+                entry.offset = in.readInt();
+                entry.length = in.readInt();
+                entry.gzipOffset = in.readInt();
+                entry.gzipLength = in.readInt();
+                if (!isInside(body, entry.offset, entry.length)
+                        || entry.gzipLength >= 0 && !isInside(body, entry.gzipOffset, entry.gzipLength)) {
+                    throw new IOException("Asset " + library + '/' + resource + " is outside of the pack");
+                }
+                entries.put(resource, entry);
+            }
+
+            libraries.put(library, new Library(versions.build(), entries.build()));
+        }
+
+        return new AssetPack(libraries.build(), body);
+    }
+
+    /**
+     * Describe the groups and settings that a pack was written for, which have to match the ones it's read with for
+     * it to be used.
+     */
+    static String getSettings(Iterable<String> groups, WebJarConfiguration configuration) {
+        return "groups=" + Joiner.on(' ').join(groups) + ',' + AssetLoader.getSettings(configuration);
+    }
+
+    /** Determine whether or not the pack contains the assets of a library. */
+    boolean contains(String library) {
+        return libraries.containsKey(library);
+    }
+
+    /** Returns the resolved version of a library, or {@code null} if it isn't in the pack. */
+    String getVersion(String library) {
+        Library packed = libraries.get(library);
+        return (packed != null) ? packed.versions.iterator().next() : null;
+    }
+
+    /**
+     * Returns every version of a library that was in the classpath when the pack was written, starting with the
+     * resolved one.  The set is empty if the library isn't in the pack.
+     */
+    Set<String> getVersions(String library) {
+        Library packed = libraries.get(library);
+        return (packed != null) ? packed.versions : ImmutableSet.<String>of();
+    }
+
+    /** Returns the names of the libraries in the pack. */
+    Set<String> getLibraries() {
+        return libraries.keySet();
+    }
+
+    /**
+     * Returns an asset of the resolved version of a library, or {@code null} if it isn't in the pack.  The asset's
+     * bytes are slices of the pack, nothing is copied.
+     */
+    Asset get(String library, String resource) {
+        Library packed = libraries.get(library);
+        Entry entry = (packed != null) ? packed.entries.get(resource) : null;
+        if (entry == null) {
+            return null;
+        }
+
+        ByteBuffer bytes = slice(entry.offset, entry.length);
+        ByteBuffer gzipBytes = (entry.gzipLength >= 0) ? slice(entry.gzipOffset, entry.gzipLength) : null;
+        return new Asset(bytes, gzipBytes, entry.mediaType, entry.version, entry.lastModifiedTime, entry.hash,
+                entry.integrity, entry.sourceMap);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer slice = body.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        return slice.slice();
+    }
+
+    private static boolean isInside(ByteBuffer body, int offset, int length) {
+        return offset >= 0 && length >= 0 && (long) offset + length <= body.capacity();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            return input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        } finally {
+            input.close();
+        }
+    }
+
+    /** Returns the file a URL refers to, or {@code null} if it isn't a file, such as an entry in a jar. */
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        }
+    }
+
+    private static class Library {
+        final Set<String> versions;
+        final Map<String, Entry> entries;
+
+        Library(Set<String> versions, Map<String, Entry> entries) {
+            this.versions = versions;
+            this.entries = entries;
+        }
+    }
+
+    /** Where an asset is in the pack and everything else needed to serve it. */
+    private static class Entry {
+        long lastModifiedTime;
+        MediaType mediaType;
+        String version;
+        String hash;
+        String integrity;
+        String sourceMap;
+        int offset;
+        int length;
+        int gzipOffset;
+        int gzipLength;
+    }
+}
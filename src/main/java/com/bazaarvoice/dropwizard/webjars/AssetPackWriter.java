@@ -0,0 +1,193 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Closer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the WebJars visible to a classloader out to an {@link AssetPack}, so that an application can serve them
+ * without reading, hashing or compressing anything.  This is meant to run at build time, for example from the webjars
+ * maven plugin, against the same classpath that the application is going to run with.  The pack has to be written for
+ * the same groups and with the same {@code gzip}, {@code gzipMinimumSize} and {@code preferMinified} settings that
+ * the application uses, otherwise the application ignores it.
+ */
+public class AssetPackWriter {
+    /** Where in the classpath the servlet looks for an asset pack. */
+    public static final String RESOURCE = "META-INF/webjars/assets.pack";
+
+    private final Iterable<String> groups;
+    private final WebJarConfiguration configuration;
+
+    public AssetPackWriter(Iterable<String> groups, WebJarConfiguration configuration) {
+        if (groups == null || !groups.iterator().hasNext()) {
+            groups = ImmutableList.copyOf(WebJarServlet.DEFAULT_MAVEN_GROUPS);
+        }
+
+        // Only the settings that change how an asset is loaded matter, a disk cache or content store would just get
+        // in the way
+        this.groups = ImmutableList.copyOf(groups);
+        this.configuration = new WebJarConfiguration();
+        this.configuration.setGzip(configuration.isGzip());
+        this.configuration.setGzipMinimumSize(configuration.getGzipMinimumSize());
+        this.configuration.setPreferMinified(configuration.isPreferMinified());
+    }
+
+    /**
+     * Write the assets of the resolved version of every library visible to a classloader to a file, returning how many
+     * were written.  Assets with identical bytes are only written once.
+     */
+    public int write(ClassLoader classLoader, File file) throws IOException {
+        WebJarIndex index = WebJarIndex.build(classLoader, groups);
+
+        // Assets are loaded through the context classloader
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return write(index, file);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private int write(WebJarIndex index, File file) throws IOException {
+        AssetLoader loader = new AssetLoader(new VersionLoader(groups), index, configuration);
+
+        // The bodies go to a temporary file first, since they have to follow the header that describes them
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File body = File.createTempFile(file.getName(), ".tmp", parent);
+
+        int count = 0;
+        Closer closer = Closer.create();
+        try {
+            FileChannel bodyChannel = closer.register(new RandomAccessFile(body, "rw")).getChannel();
+            Map<String, Integer> offsets = Maps.newHashMap();
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(header);
+            out.writeUTF(AssetPack.getSettings(groups, configuration));
+
+            Set<String> libraries = index.getLibraries();
+            out.writeInt(libraries.size());
+            for (String library : Ordering.natural().sortedCopy(libraries)) {
+                out.writeUTF(library);
+
+                Set<String> versions = index.getVersions(library);
+                out.writeInt(versions.size());
+                for (String version : versions) {
+                    out.writeUTF(version);
+                }
+
+                Map<String, Asset> assets = Maps.newLinkedHashMap();
+                for (String resource : Ordering.natural().sortedCopy(index.getResources(library))) {
+                    Asset asset;
+                    try {
+                        asset = loader.load(new AssetId(library, resource));
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException("Unable to load " + library + '/' + resource, e);
+                    }
+
+                    if (asset != AssetLoader.NOT_FOUND) {
+                        assets.put(resource, asset);
+                    }
+                }
+
+                out.writeInt(assets.size());
+                for (Map.Entry<String, Asset> entry : assets.entrySet()) {
+                    Asset asset = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(asset.lastModifiedTime);
+                    out.writeUTF(asset.contentType);
+                    out.writeUTF(asset.version);
+                    out.writeUTF(asset.hash);
+                    out.writeUTF(asset.getIntegrity());
+                    out.writeBoolean(asset.sourceMap != null);
+                    if (asset.sourceMap != null) {
+                        out.writeUTF(asset.sourceMap);
+                    }
+                    out.writeInt(append(bodyChannel, offsets, asset.hash, asset.bytes));
+                    out.writeInt(asset.bytes.remaining());
+                    if (asset.gzipBytes != null) {
+                        out.writeInt(append(bodyChannel, offsets, asset.hash + WebJarServlet.GZIP_ETAG_SUFFIX,
+                                asset.gzipBytes));
+                        out.writeInt(asset.gzipBytes.remaining());
+                    } else {
+                        out.writeInt(-1);
+                        out.writeInt(-1);
+                    }
+                    count++;
+                }
+            }
+            out.close();
+
+            ByteBuffer prefix = ByteBuffer.allocate(8);
+            prefix.putInt(AssetPack.MAGIC).putInt(header.size()).flip();
+
+            FileChannel channel = closer.register(new FileOutputStream(file)).getChannel();
+            writeFully(channel, prefix);
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+            long position = 0;
+            long size = bodyChannel.size();
+            while (position < size) {
+                position += bodyChannel.transferTo(position, size - position, channel);
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            try {
+                closer.close();
+            } finally {
+                if (!body.delete()) {
+                    body.deleteOnExit();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Append bytes to the body of the pack, unless identical bytes are already there, and return where they are.
+     * Assets are addressed with ints, the same as the buffers they're served from.
+     */
+    private static int append(FileChannel channel, Map<String, Integer> offsets, String key, ByteBuffer bytes)
+            throws IOException {
+        Integer existing = offsets.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        long offset = channel.size();
+        if (offset + bytes.remaining() > Integer.MAX_VALUE) {
+            throw new IOException("Assets are too big to fit in a single pack");
+        }
+
+        channel.position(offset);
+        writeFully(channel, bytes.duplicate());
+        offsets.put(key, (int) offset);
+        return (int) offset;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Loads a configurable set of assets into a {@link WebJarServlet}'s cache when the application starts, so that the
+ * first requests after a deploy don't have to pay for loading them.  Assets are loaded in parallel by a fixed number
+ * of threads, and the health check returned by {@link #getHealthCheck()} stays unhealthy until every asset has been
+ * loaded.
+ */
+class AssetPreloader implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(AssetPreloader.class);
+
+    private final WebJarServlet servlet;
+    private final List<Pattern> patterns;
+    private final long maximumSize;
+    private final int threads;
+
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile int total = -1;
+    private ExecutorService executor;
+
+    AssetPreloader(WebJarServlet servlet, WebJarConfiguration configuration) {
+        this.servlet = servlet;
+        this.maximumSize = configuration.getPreloadMaximumSize();
+        this.threads = configuration.getPreloadThreads();
+
+        ImmutableList.Builder<Pattern> patterns = ImmutableList.builder();
+        for (String glob : configuration.getPreload()) {
+            patterns.add(toPattern(glob));
+        }
+        this.patterns = patterns.build();
+    }
+
+    @Override
+    public void start() throws Exception {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        List<AssetId> ids = findAssets(servlet.getIndex());
+        remaining.set(ids.size());
+        total = ids.size();
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("webjars-preload-%d")
+                .setDaemon(true)
+                .build());
+
+        for (final AssetId id : ids) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        servlet.preload(id.library, id.resource);
+                    } catch (Exception e) {
+                        LOG.warn("Unable to preload {}", id, e);
+                    }
+
+                    if (remaining.decrementAndGet() == 0) {
+                        LOG.info("Preloaded {} WebJar assets in {}", total, stopwatch);
+                    }
+                }
+            });
+        }
+
+        // Let the threads go away once everything has been loaded
+        executor.shutdown();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    HealthCheck getHealthCheck() {
+        return new HealthCheck() {
+            @Override
+            protected Result check() throws Exception {
+                if (total < 0) {
+                    return Result.unhealthy("WebJar preloading hasn't started");
+                }
+
+                int left = remaining.get();
+                if (left > 0) {
+                    return Result.unhealthy("Preloaded " + (total - left) + " of " + total + " WebJar assets");
+                }
+
+                return Result.healthy("Preloaded " + total + " WebJar assets");
+            }
+        };
+    }
+
+    /** Determine which of the assets in the index should be preloaded. */
+    private List<AssetId> findAssets(WebJarIndex index) {
+        List<AssetId> ids = Lists.newArrayList();
+        for (String library : index.getLibraries()) {
+            for (String resource : index.getResources(library)) {
+                if (shouldPreload(index, library, resource)) {
+                    ids.add(new AssetId(library, resource));
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    private boolean shouldPreload(WebJarIndex index, String library, String resource) {
+        if (isSmallEnough(index.getSize(library, resource), maximumSize)) {
+            return true;
+        }
+
+        String path = library + '/' + resource;
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Determine whether or not a resource is preloaded for its size alone.  A resource whose size isn't known, which
+     * the index reports as -1, could be any size at all so it's never small enough.
+     */
+    static boolean isSmallEnough(long size, long maximumSize) {
+        return maximumSize > 0 && size >= 0 && size <= maximumSize;
+    }
+
+    /**
+     * Convert a preload glob into a regular expression.  A glob that is just a library name matches every resource in
+     * the library.
+     */
+    static Pattern toPattern(String glob) {
+        if (glob.indexOf('/') == -1) {
+            glob = glob + "/**";
+        }
+
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,31 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import java.nio.ByteBuffer;
+
+/** Where the bytes of cached assets are kept. */
+public enum AssetStorage {
+    /** Assets are kept in byte arrays on the Java heap. */
+    HEAP {
+        @Override
+        ByteBuffer store(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    },
+
+    /**
+     * Assets are kept in direct buffers outside of the Java heap.  Large assets then don't contribute to garbage
+     * collection pressure, and can be handed to the container to write without being copied first.
+     */
+    DIRECT {
+        @Override
+        ByteBuffer store(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    };
+
+    /** Returns a read-only buffer containing a copy of the given bytes. */
+    abstract ByteBuffer store(byte[] bytes);
+}
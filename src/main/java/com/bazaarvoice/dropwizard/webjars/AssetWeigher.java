@@ -2,11 +2,16 @@ package com.bazaarvoice.dropwizard.webjars;
 
 import com.google.common.cache.Weigher;
 
-/** Weigh an asset according to the number of bytes it contains. */
-class AssetWeigher implements Weigher<AssetId, Asset> {
+/** Weigh an asset in a Guava cache, whatever it's keyed by, the way the configured {@link AssetCacheWeigher} does. */
+class AssetWeigher implements Weigher<Object, Asset> {
+    private final AssetCacheWeigher weigher;
+
+    AssetWeigher(AssetCacheWeigher weigher) {
+        this.weigher = weigher;
+    }
+
     @Override
-    public int weigh(AssetId key, Asset asset) {
-        // return file size in bytes
-        return (asset.bytes != null) ? asset.bytes.length : 0;
+    public int weigh(Object key, Asset asset) {
+        return weigher.weigh(asset);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** An inclusive range of the bytes of an asset, as requested by a Range header. */
+class ByteRange {
+    /** Range headers with more ranges than this are ignored and the whole asset is sent instead. */
+    static final int MAXIMUM_RANGES = 50;
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final long INVALID = -2;
+    private static final Splitter RANGE_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+
+    private static final Comparator<ByteRange> BY_FIRST = new Comparator<ByteRange>() {
+        @Override
+        public int compare(ByteRange a, ByteRange b) {
+            return (a.first < b.first) ? -1 : (a.first == b.first ? 0 : 1);
+        }
+    };
+
+    public final int first;
+    public final int last;
+
+    ByteRange(int first, int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    int length() {
+        return last - first + 1;
+    }
+
+    /** Returns the value of the Content-Range header for this range of an asset with the given length. */
+    String toContentRange(int total) {
+        return "bytes " + first + '-' + last + '/' + total;
+    }
+
+    /**
+     * Parse a Range header into the ranges it asks for of an asset with the given length.  Ranges are clipped to the
+     * asset, ranges that overlap or touch are merged together, and the result is sorted.  Returns {@code null} if the
+     * header isn't a valid set of byte ranges and should be ignored, or an empty list if none of the ranges can be
+     * satisfied.
+     */
+    static List<ByteRange> parse(String header, int length) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        List<ByteRange> ranges = Lists.newArrayList();
+        int count = 0;
+        for (String spec : RANGE_SPLITTER.split(value.substring(BYTES_UNIT.length()))) {
+            if (++count > MAXIMUM_RANGES) {
+                return null;
+            }
+
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+
+            long first = parseNumber(spec.substring(0, dash).trim());
+            long last = parseNumber(spec.substring(dash + 1).trim());
+            if (first == INVALID || last == INVALID) {
+                return null;
+            }
+
+            if (first == -1) {
+                // A suffix range, asking for the last so many bytes
+                if (last == -1) {
+                    return null;
+                }
+
+                if (last > 0 && length > 0) {
+                    ranges.add(new ByteRange((int) Math.max(0, length - last), length - 1));
+                }
+            } else {
+                if (last != -1 && last < first) {
+                    return null;
+                }
+
+                if (first < length) {
+                    long end = (last != -1) ? Math.min(last, length - 1) : length - 1;
+                    ranges.add(new ByteRange((int) first, (int) end));
+                }
+            }
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        Collections.sort(ranges, BY_FIRST);
+
+        List<ByteRange> coalesced = Lists.newArrayList();
+        ByteRange current = ranges.get(0);
+        for (ByteRange range : ranges.subList(1, ranges.size())) {
+            if (range.first <= current.last + 1) {
+                current = new ByteRange(current.first, Math.max(current.last, range.last));
+            } else {
+                coalesced.add(current);
+                current = range;
+            }
+        }
+        coalesced.add(current);
+
+        return coalesced;
+    }
+
+    /**
+     * Parse a non-negative decimal number.  Returns -1 for an empty string and {@link #INVALID} for anything else that
+     * isn't a number.  Numbers too large to matter are capped at {@link Long#MAX_VALUE}.
+     */
+    private static long parseNumber(String s) {
+        if (s.isEmpty()) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+
+            value = (value > (Long.MAX_VALUE - 9) / 10) ? Long.MAX_VALUE : value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return first + "-" + last;
+    }
+}
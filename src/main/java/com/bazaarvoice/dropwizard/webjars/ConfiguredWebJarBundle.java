@@ -0,0 +1,36 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+
+/**
+ * A {@link WebJarBundle} whose settings come from the application's own configuration, so that they can be changed in
+ * its YAML file without rebuilding the application:
+ * <pre>
+ * bootstrap.addBundle(new ConfiguredWebJarBundle&lt;MyConfiguration&gt;() {
+ *     public WebJarConfiguration getWebJarConfiguration(MyConfiguration configuration) {
+ *         return configuration.getWebJars();
+ *     }
+ * });
+ * </pre>
+ */
+public abstract class ConfiguredWebJarBundle<T> implements ConfiguredBundle<T> {
+    private final String[] additionalPackages;
+
+    protected ConfiguredWebJarBundle(String... additionalPackages) {
+        this.additionalPackages = additionalPackages;
+    }
+
+    /** Returns the WebJar settings from the application's configuration. */
+    public abstract WebJarConfiguration getWebJarConfiguration(T configuration);
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+    }
+
+    @Override
+    public void run(T configuration, Environment environment) {
+        new WebJarBundle(getWebJarConfiguration(configuration), additionalPackages).run(environment);
+    }
+}
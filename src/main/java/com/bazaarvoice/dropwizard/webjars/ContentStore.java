@@ -0,0 +1,62 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.MapMaker;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed store of the bytes of assets, keyed by their hash.  WebJars often contain copies of the same
+ * files, such as a bundled jQuery, fonts or license files, and interning the bytes of every asset that's loaded lets
+ * all of the copies share a single buffer.  The store only holds its buffers weakly, so a buffer goes away along with
+ * the last cached asset that uses it.
+ */
+class ContentStore {
+    private static final String GZIP_SUFFIX = WebJarServlet.GZIP_ETAG_SUFFIX;
+
+    private final ConcurrentMap<String, ByteBuffer> buffers = new MapMaker().weakValues().makeMap();
+    private final AtomicLong sharedCount = new AtomicLong();
+    private final AtomicLong sharedBytes = new AtomicLong();
+
+    /**
+     * Returns an asset with the same content as the given one that uses the buffers of an identical asset that was
+     * interned before it, or the asset itself if there isn't one.
+     */
+    Asset intern(Asset asset) {
+        if (asset == AssetLoader.NOT_FOUND || asset.hash == null) {
+            return asset;
+        }
+
+        ByteBuffer bytes = intern(asset.hash, asset.bytes);
+        ByteBuffer gzipBytes = (asset.gzipBytes != null) ? intern(asset.hash + GZIP_SUFFIX, asset.gzipBytes) : null;
+        if (bytes == asset.bytes && gzipBytes == asset.gzipBytes) {
+            return asset;
+        }
+
+        sharedCount.incrementAndGet();
+        sharedBytes.addAndGet(bytes.remaining() + ((gzipBytes != null) ? gzipBytes.remaining() : 0));
+        return new Asset(asset, bytes, gzipBytes);
+    }
+
+    /** Returns the number of assets that were given an identical asset's buffers instead of their own. */
+    long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    /** Returns the total size of the buffers that assets were able to share rather than keep a copy of. */
+    long getSharedBytes() {
+        return sharedBytes.get();
+    }
+
+    /** Returns the number of distinct buffers in the store. */
+    long size() {
+        return buffers.size();
+    }
+
+    private ByteBuffer intern(String key, ByteBuffer buffer) {
+        // The hash only finds a candidate, the bytes have to actually be the same for the buffer to be shared
+        ByteBuffer existing = buffers.putIfAbsent(key, buffer);
+        return (existing != null && existing.equals(buffer)) ? existing : buffer;
+    }
+}
@@ -0,0 +1,178 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The dependencies between the WebJars in the classpath, as declared by their poms.
+ * <p/>
+ * A WebJar's pom is located next to its <code>pom.properties</code> at
+ * {@code META-INF/maven/<group>/<library>/pom.xml}.  Only dependencies on other WebJars in one of the groups count,
+ * and test, provided and optional dependencies are left out because a page using the library doesn't need them.  Each
+ * library's pom is only read the first time its dependencies are asked for.
+ */
+class DependencyGraph {
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyGraph.class);
+
+    private static final Set<String> IGNORED_SCOPES = ImmutableSet.of("test", "provided", "system");
+
+    private final Set<String> groups;
+    private final ConcurrentMap<String, List<String>> dependencies = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, List<String>> transitiveDependencies = Maps.newConcurrentMap();
+
+    DependencyGraph(Iterable<String> groups) {
+        this.groups = ImmutableSet.copyOf(groups);
+    }
+
+    /** Returns the libraries that a library depends on directly, in the order its pom declares them. */
+    List<String> getDependencies(String library) {
+        List<String> libraries = dependencies.get(library);
+        if (libraries == null) {
+            libraries = load(library);
+            List<String> existing = dependencies.putIfAbsent(library, libraries);
+            if (existing != null) {
+                libraries = existing;
+            }
+        }
+
+        return libraries;
+    }
+
+    /**
+     * Returns every library that a library depends on, directly or not, breadth first so that libraries closer to it
+     * come first.  The library itself is never included, even if its dependencies form a cycle back to it.
+     */
+    List<String> getTransitiveDependencies(String library) {
+        List<String> libraries = transitiveDependencies.get(library);
+        if (libraries == null) {
+            Set<String> seen = Sets.newLinkedHashSet();
+            seen.add(library);
+
+            Deque<String> queue = Lists.newLinkedList();
+            queue.add(library);
+            while (!queue.isEmpty()) {
+                for (String dependency : getDependencies(queue.remove())) {
+                    if (seen.add(dependency)) {
+                        queue.add(dependency);
+                    }
+                }
+            }
+
+            seen.remove(library);
+            libraries = ImmutableList.copyOf(seen);
+            List<String> existing = transitiveDependencies.putIfAbsent(library, libraries);
+            if (existing != null) {
+                libraries = existing;
+            }
+        }
+
+        return libraries;
+    }
+
+    private List<String> load(String library) {
+        ClassLoader classLoader = Objects.firstNonNull(
+                Thread.currentThread().getContextClassLoader(),
+                DependencyGraph.class.getClassLoader());
+
+        // The first pom found in the earliest group belongs to the same WebJar that the library's version comes from
+        for (String group : groups) {
+            URL url = classLoader.getResource(String.format("META-INF/maven/%s/%s/pom.xml", group, library));
+            if (url != null) {
+                return parse(url, library);
+            }
+        }
+
+        return ImmutableList.of();
+    }
+
+    private List<String> parse(URL url, String library) {
+        try {
+            Closer closer = Closer.create();
+            try {
+                InputStream in = closer.register(url.openStream());
+                return getDependencies(newDocumentBuilder().parse(in), library);
+            } finally {
+                closer.close();
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to read the dependencies of {} from {}", library, url, e);
+            return ImmutableList.of();
+        }
+    }
+
+    private List<String> getDependencies(Document pom, String library) {
+        Set<String> libraries = Sets.newLinkedHashSet();
+
+        // Only the project's own dependencies count, not the ones in its dependency management or plugins
+        for (Element element : getChildren(pom.getDocumentElement(), "dependencies")) {
+            for (Element dependency : getChildren(element, "dependency")) {
+                String groupId = getText(dependency, "groupId");
+                String artifactId = getText(dependency, "artifactId");
+                if (groupId == null || artifactId == null || !groups.contains(groupId) || artifactId.equals(library)) {
+                    continue;
+                }
+
+                if (IGNORED_SCOPES.contains(getText(dependency, "scope"))
+                        || "true".equals(getText(dependency, "optional"))) {
+                    continue;
+                }
+
+                libraries.add(artifactId);
+            }
+        }
+
+        return ImmutableList.copyOf(libraries);
+    }
+
+    private static List<Element> getChildren(Element parent, String name) {
+        List<Element> children = Lists.newArrayList();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element && name.equals(getName(node))) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static String getText(Element parent, String name) {
+        List<Element> children = getChildren(parent, name);
+        return !children.isEmpty() ? children.get(0).getTextContent().trim() : null;
+    }
+
+    private static String getName(Node node) {
+        return (node.getLocalName() != null) ? node.getLocalName() : node.getNodeName();
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws Exception {
+        // Poms never need a DTD or external entities, so don't let one make the parser go looking for them
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setExpandEntityReferences(false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newDocumentBuilder();
+    }
+}
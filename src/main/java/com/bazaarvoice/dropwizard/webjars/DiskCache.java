@@ -0,0 +1,214 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closer;
+import com.google.common.net.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A second level cache of assets in a local directory.  Assets that have been evicted from the in-memory cache, or
+ * that were loaded before the application was restarted, are read back from here instead of being read out of their
+ * jars, hashed and compressed all over again.  Each asset is kept in a file of its own, which is written to a
+ * temporary file first and then renamed into place so that a partially written entry is never read.  Entries are
+ * memory mapped when they're read, so their bytes live in the page cache rather than on the Java heap.
+ */
+class DiskCache {
+    /** Identifies a file written in this format, change it whenever the format changes. */
+    private static final int MAGIC = 0x574a4302;
+    private static final String EXTENSION = ".asset";
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskCache.class);
+
+    private final File directory;
+    private final String settings;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    DiskCache(File directory, WebJarConfiguration configuration) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Unable to create asset cache directory " + directory);
+        }
+
+        this.directory = directory;
+
+        // The settings that change how an asset is loaded are part of every key, so that changing them doesn't serve
+        // entries that were written with the old ones
+        this.settings = AssetLoader.getSettings(configuration);
+    }
+
+    /** Returns the cached asset of a version directory of a library, or {@code null} if it hasn't been cached. */
+    Asset get(String library, String version, String resource) {
+        String key = toKey(library, version, resource);
+        File file = toFile(key);
+        if (file.isFile()) {
+            try {
+                Asset asset = read(file, key);
+                if (asset != null) {
+                    hits.incrementAndGet();
+                    return asset;
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to read cached asset {}", file, e);
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Cache an asset of a version directory of a library.  Failing to write the asset is logged and ignored. */
+    void put(String library, String version, String resource, Asset asset) {
+        String key = toKey(library, version, resource);
+        File file = toFile(key);
+
+        File temp = null;
+        try {
+            temp = File.createTempFile(file.getName(), ".tmp", directory);
+            write(temp, key, asset);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to cache asset {}", file, e);
+        } finally {
+            if (temp != null && temp.exists() && !temp.delete()) {
+                LOG.debug("Unable to delete {}", temp);
+            }
+        }
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    private String toKey(String library, String version, String resource) {
+        return library + '/' + version + '/' + resource + '?' + settings;
+    }
+
+    private File toFile(String key) {
+        return new File(directory, Hashing.murmur3_128().hashString(key, Charsets.UTF_8) + EXTENSION);
+    }
+
+    /**
+     * Read an entry back.  Returns {@code null} if the file isn't an entry for the given key, which can only happen if
+     * it was written in a different format or two keys have the same hash.
+     */
+    private static Asset read(File file, String key) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        } finally {
+            input.close();
+        }
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            return null;
+        }
+
+        int headerLength = buffer.getInt();
+        if (headerLength < 0 || headerLength > buffer.remaining()) {
+            return null;
+        }
+
+        byte[] header = new byte[headerLength];
+        buffer.get(header);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        if (!key.equals(in.readUTF())) {
+            return null;
+        }
+
+        long lastModifiedTime = in.readLong();
+        MediaType mediaType = MediaType.parse(in.readUTF());
+        String version = in.readUTF();
+        String hash = in.readUTF();
+        String integrity = in.readBoolean() ? in.readUTF() : null;
+        String sourceMap = in.readBoolean() ? in.readUTF() : null;
+        int length = in.readInt();
+        int gzipLength = in.readInt();
+        if (length < 0 || buffer.remaining() != length + Math.max(gzipLength, 0)) {
+            return null;
+        }
+
+        ByteBuffer bytes = slice(buffer, length);
+        ByteBuffer gzipBytes = (gzipLength >= 0) ? slice(buffer, gzipLength) : null;
+        return new Asset(bytes, gzipBytes, mediaType, version, lastModifiedTime, hash, integrity, sourceMap);
+    }
+
+    private static void write(File file, String key, Asset asset) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeUTF(key);
+        out.writeLong(asset.lastModifiedTime);
+        out.writeUTF(asset.contentType);
+        out.writeUTF(asset.version);
+        out.writeUTF(asset.hash);
+        // The integrity value is only written if something has needed it already, it's never worth computing here
+        String integrity = asset.getComputedIntegrity();
+        out.writeBoolean(integrity != null);
+        if (integrity != null) {
+            out.writeUTF(integrity);
+        }
+        out.writeBoolean(asset.sourceMap != null);
+        if (asset.sourceMap != null) {
+            out.writeUTF(asset.sourceMap);
+        }
+        out.writeInt(asset.bytes.remaining());
+        out.writeInt((asset.gzipBytes != null) ? asset.gzipBytes.remaining() : -1);
+        out.close();
+
+        ByteBuffer prefix = ByteBuffer.allocate(8);
+        prefix.putInt(MAGIC).putInt(header.size()).flip();
+
+        Closer closer = Closer.create();
+        try {
+            FileChannel channel = closer.register(new FileOutputStream(file)).getChannel();
+            writeFully(channel, prefix);
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+            writeFully(channel, asset.bytes.duplicate());
+            if (asset.gzipBytes != null) {
+                writeFully(channel, asset.gzipBytes.duplicate());
+            }
+
+            // Make sure the contents are on disk before the file is renamed into place
+            channel.force(false);
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
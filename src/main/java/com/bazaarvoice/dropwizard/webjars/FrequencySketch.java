@@ -0,0 +1,93 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+/**
+ * An estimate of how often each key has been seen recently, used by {@link TinyLfuAssetCache} to decide which assets
+ * are worth keeping.  It's a count-min sketch of 4-bit counters, sixteen to a long, with each key counted in four of
+ * them.  The counts are aged by halving all of them once enough keys have been counted, so that keys that used to be
+ * popular don't stay in the cache forever.  Not thread safe.
+ * <p>
+ * Adapted from {@code com.github.benmanes.caffeine.cache.FrequencySketch} in Caffeine
+ * (https://github.com/ben-manes/caffeine), Copyright 2015 Ben Manes, licensed under the Apache License, Version 2.0.
+ * The seeds, the spreading of hashes and the increment and reset scheme are Caffeine's.
+ */
+class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /** Create a sketch for roughly the given number of distinct keys. */
+    FrequencySketch(long expectedKeys) {
+        int length = (int) Math.min(Math.max(Long.highestOneBit(Math.max(expectedKeys, 1) - 1) << 1, 16), 1 << 20);
+        table = new long[length];
+        tableMask = length - 1;
+        sampleSize = 10 * length;
+    }
+
+    /** Returns the estimated number of times the key has been seen recently, up to 15. */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAXIMUM_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /** Count another sighting of the key. */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+
+        return false;
+    }
+
+    /** Halve every counter. */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+
+        size /= 2;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /** Spread out the bits of a hash code, in case the key's own hash code is poor. */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
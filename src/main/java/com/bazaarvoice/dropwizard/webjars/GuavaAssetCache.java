@@ -0,0 +1,67 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/** An asset cache backed by a Guava {@link LoadingCache}, with its least recently used eviction and expiration. */
+class GuavaAssetCache implements AssetCache {
+    private final LoadingCache<AssetId, Asset> cache;
+    private final AssetCacheWeigher weigher;
+
+    GuavaAssetCache(CacheBuilder<Object, Object> builder, AssetCacheWeigher weigher,
+                    CacheLoader<AssetId, Asset> loader) {
+        this.weigher = weigher;
+        cache = builder.weigher(new AssetWeigher(weigher)).recordStats().build(loader);
+    }
+
+    @Override
+    public Asset getIfPresent(AssetId id) {
+        return cache.getIfPresent(id);
+    }
+
+    @Override
+    public Asset getUnchecked(AssetId id) {
+        return cache.getUnchecked(id);
+    }
+
+    @Override
+    public Map<AssetId, Asset> getAll(Iterable<AssetId> ids) {
+        try {
+            return cache.getAll(ids);
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    @Override
+    public void invalidate(AssetId id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public long weight() {
+        // Guava doesn't expose the weight it keeps track of, so add the assets up
+        long weight = 0;
+        for (Asset asset : cache.asMap().values()) {
+            weight += weigher.weigh(asset);
+        }
+
+        return weight;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
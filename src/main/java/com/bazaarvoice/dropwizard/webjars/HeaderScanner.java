@@ -0,0 +1,184 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+/**
+ * Answers the questions {@link WebJarServlet} needs to ask of request headers by scanning the header values in place.
+ * Nothing here splits a header or creates substrings, so handling a request for a cached asset doesn't allocate.
+ */
+final class HeaderScanner {
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String WEAK_PREFIX = "W/";
+
+    private HeaderScanner() {}
+
+    /**
+     * Determine whether an If-None-Match header matches an ETag.  The header matches if it is a wildcard or it contains
+     * a quoted, possibly weak, ETag whose value is the hash followed by the suffix, which is empty for the ETag of an
+     * uncompressed response.
+     */
+    static boolean matchesETag(String header, String hash, String suffix) {
+        int length = header.length();
+        int i = 0;
+        while (true) {
+            i = skipSeparators(header, i, length);
+            if (i == length) {
+                return false;
+            }
+
+            if (header.charAt(i) == '*' && skipWhitespace(header, i + 1, length) == nextComma(header, i, length)) {
+                return true;
+            }
+
+            if (header.startsWith(WEAK_PREFIX, i)) {
+                i += WEAK_PREFIX.length();
+            }
+
+            if (i < length && header.charAt(i) == '"') {
+                int close = header.indexOf('"', i + 1);
+                if (close == -1) {
+                    return false;
+                }
+
+                if (matchesHash(header, i + 1, close, hash, suffix)) {
+                    return true;
+                }
+
+                i = close + 1;
+            }
+
+            // Anything that isn't a quoted ETag can't match, move on to the next one
+            i = nextComma(header, i, length);
+        }
+    }
+
+    /**
+     * Determine whether or not an Accept-Encoding header allows a gzip response.  Encodings with a quality value of 0
+     * are explicitly unacceptable, and a wildcard only applies if gzip isn't mentioned by name.
+     */
+    static boolean acceptsGzip(String header) {
+        if (header == null) {
+            return false;
+        }
+
+        Boolean gzip = null;
+        Boolean wildcard = null;
+
+        int length = header.length();
+        int i = 0;
+        while (true) {
+            i = skipSeparators(header, i, length);
+            if (i == length) {
+                break;
+            }
+
+            int end = nextComma(header, i, length);
+            int semicolon = indexOf(header, ';', i, end);
+            int nameEnd = trimEnd(header, i, (semicolon != -1) ? semicolon : end);
+            boolean acceptable = (semicolon == -1) || isAcceptableQuality(header, semicolon + 1, end);
+
+            if (regionEqualsIgnoreCase(header, i, nameEnd, GZIP) || regionEqualsIgnoreCase(header, i, nameEnd, X_GZIP)) {
+                gzip = acceptable;
+            } else if (nameEnd - i == 1 && header.charAt(i) == '*') {
+                wildcard = acceptable;
+            }
+
+            i = end;
+        }
+
+        return (gzip != null) ? gzip : Boolean.TRUE.equals(wildcard);
+    }
+
+    /** Look through the parameters of an encoding for its quality value, an encoding without one is acceptable. */
+    private static boolean isAcceptableQuality(String header, int start, int end) {
+        int i = start;
+        while (i < end) {
+            i = skipWhitespace(header, i, end);
+            int parameterEnd = indexOf(header, ';', i, end);
+            if (parameterEnd == -1) {
+                parameterEnd = end;
+            }
+
+            if (i + 1 < parameterEnd && (header.charAt(i) == 'q' || header.charAt(i) == 'Q')
+                    && header.charAt(i + 1) == '=') {
+                return isPositiveNumber(header, i + 2, trimEnd(header, i + 2, parameterEnd));
+            }
+
+            i = parameterEnd + 1;
+        }
+
+        return true;
+    }
+
+    /** Determine whether a region is a decimal number greater than zero.  Anything that isn't a number is not. */
+    private static boolean isPositiveNumber(String s, int start, int end) {
+        boolean digits = false;
+        boolean positive = false;
+        boolean point = false;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                positive |= (c != '0');
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+
+        return digits && positive;
+    }
+
+    private static boolean matchesHash(String header, int start, int end, String hash, String suffix) {
+        return end - start == hash.length() + suffix.length()
+                && header.regionMatches(start, hash, 0, hash.length())
+                && header.regionMatches(start + hash.length(), suffix, 0, suffix.length());
+    }
+
+    private static boolean regionEqualsIgnoreCase(String s, int start, int end, String value) {
+        return end - start == value.length() && s.regionMatches(true, start, value, 0, value.length());
+    }
+
+    private static int skipSeparators(String s, int i, int end) {
+        while (i < end && (s.charAt(i) == ',' || isWhitespace(s.charAt(i)))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static int skipWhitespace(String s, int i, int end) {
+        while (i < end && isWhitespace(s.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static int trimEnd(String s, int start, int end) {
+        while (end > start && isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static int nextComma(String s, int i, int end) {
+        int comma = indexOf(s, ',', i, end);
+        return (comma != -1) ? comma : end;
+    }
+
+    private static int indexOf(String s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
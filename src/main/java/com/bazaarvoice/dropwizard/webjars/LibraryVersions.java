@@ -0,0 +1,38 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/** The versions of a library that are present in the classpath. */
+class LibraryVersions {
+    /** The version that is served when a request doesn't ask for a particular one. */
+    public final String version;
+
+    /** Every version present, starting with the default one. */
+    public final Set<String> versions;
+
+    /**
+     * The directory that the files of the default version are located under.  This can be the version with some
+     * -suffixes removed, and isn't known until the first asset of the library has been found.
+     */
+    private volatile String directory;
+
+    LibraryVersions(String version, Iterable<String> versions) {
+        this.version = version;
+        this.versions = ImmutableSet.<String>builder().add(version).addAll(versions).build();
+    }
+
+    /** Returns the directory of the default version if it's known, otherwise the version itself. */
+    String getDirectory() {
+        return Objects.firstNonNull(directory, version);
+    }
+
+    void setDirectory(String directory) {
+        // Only written when it changes, so once the directory has been found this is never written again
+        if (!directory.equals(this.directory)) {
+            this.directory = directory;
+        }
+    }
+}
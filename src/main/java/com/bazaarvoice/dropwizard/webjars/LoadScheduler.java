@@ -0,0 +1,187 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads assets that aren't cached on the bounded pool of loader threads instead of on request threads.  After a
+ * deploy, when nothing is cached, only as many assets are read at a time as there are loader threads and only as many
+ * loads wait for one as the loader queue holds.  Loads beyond that are rejected straight away instead of tying up
+ * request threads and I/O.
+ * <p/>
+ * Concurrent requests for the same asset share a single load, so a popular asset that's been evicted only takes up
+ * one loader thread no matter how many requests are waiting for it.  Requests wait for a load for at most the load
+ * timeout, after which they give up and the servlet responds with a 503.  The load itself carries on, so the asset is
+ * cached for the requests that come after.
+ */
+class LoadScheduler {
+    private final AssetCache cache;
+    private final AssetLoader loader;
+    private final Executor executor;
+    private final long timeoutMillis;
+    private final ScheduledExecutorService timer;
+
+    /** The loads in progress, which requests for the same asset wait for instead of starting another. */
+    private final ConcurrentMap<AssetId, ListenableFuture<Asset>> loads = Maps.newConcurrentMap();
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    LoadScheduler(AssetCache cache, AssetLoader loader, Executor executor, long timeoutMillis) {
+        this.cache = cache;
+        this.loader = loader;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("webjars-load-timeout-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Returns the future of an asset, starting to load it on a loader thread unless it's already being loaded.  The
+     * future fails with a {@link RejectedExecutionException} if the loader queue is full.
+     */
+    ListenableFuture<Asset> load(final AssetId id) {
+        ListenableFuture<Asset> load = loads.get(id);
+        if (load != null) {
+            coalesced.incrementAndGet();
+            return load;
+        }
+
+        final ListenableFutureTask<Asset> task = ListenableFutureTask.create(new Callable<Asset>() {
+            @Override
+            public Asset call() throws Exception {
+                return loader.isBulkLoadable(id)
+                        ? cache.getAll(Collections.singleton(id)).get(id)
+                        : cache.getUnchecked(id);
+            }
+        });
+
+        load = loads.putIfAbsent(id, task);
+        if (load != null) {
+            coalesced.incrementAndGet();
+            return load;
+        }
+
+        // Once the asset is in the cache later requests find it there
+        task.addListener(new Runnable() {
+            @Override
+            public void run() {
+                loads.remove(id, task);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            loads.remove(id, task);
+            rejected.incrementAndGet();
+            return Futures.immediateFailedFuture(e);
+        }
+
+        return task;
+    }
+
+    /**
+     * Load an asset and wait for it.  Throws a {@link TimeoutException} if the load takes longer than the timeout, and
+     * a {@link RejectedExecutionException} if the loader queue is full.  A failure to load the asset is thrown as an
+     * unchecked exception.
+     */
+    Asset get(AssetId id) throws TimeoutException {
+        try {
+            return Uninterruptibles.getUninterruptibly(load(id), timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw new UncheckedExecutionException(e.getCause());
+        }
+    }
+
+    /**
+     * Load an asset without waiting for it.  The callback is called exactly once: with the asset when it has been
+     * loaded, or with a {@link TimeoutException} if that takes longer than the timeout, a
+     * {@link RejectedExecutionException} if the loader queue is full, or whatever else went wrong.
+     */
+    void get(AssetId id, final FutureCallback<Asset> callback) {
+        final AtomicBoolean called = new AtomicBoolean();
+        ListenableFuture<Asset> load = load(id);
+        final ScheduledFuture<?> timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (called.compareAndSet(false, true)) {
+                    timeouts.incrementAndGet();
+                    callback.onFailure(new TimeoutException());
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        Futures.addCallback(load, new FutureCallback<Asset>() {
+            @Override
+            public void onSuccess(Asset asset) {
+                if (called.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    callback.onSuccess(asset);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (called.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    callback.onFailure(t);
+                }
+            }
+        });
+    }
+
+    /** Returns the number of loads in progress. */
+    long getLoadCount() {
+        return loads.size();
+    }
+
+    /** Returns the number of times a request waited for a load that was already in progress. */
+    long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /** Returns the number of loads that were rejected because the loader queue was full. */
+    long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Returns the number of times a request gave up waiting for a load. */
+    long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,89 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers libraries and assets that don't exist, so that requests for them can be rejected without going anywhere
+ * near the asset cache or the classloader.  Missing things are kept in a cache of their own with its own bounds, which
+ * keeps a flood of requests for made up paths from pushing real assets out of the asset cache.  Optionally a Bloom
+ * filter of everything that does exist rejects most made up paths before they are ever looked up.
+ */
+class NegativeCache {
+    /** The rate of false positives the Bloom filter is sized for. */
+    private static final double BLOOM_FILTER_FPP = 0.01;
+
+    // Library names never contain a slash, so they can't be confused with the keys of assets
+    private final Cache<String, Boolean> missing;
+    private final BloomFilter<CharSequence> filter;
+
+    NegativeCache(WebJarConfiguration configuration, BloomFilter<CharSequence> filter) {
+        missing = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getNegativeCacheMaximumSize())
+                .expireAfterWrite(configuration.getNegativeCacheTtl().toMilliseconds(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        this.filter = filter;
+    }
+
+    /** Returns true if the library is known not to exist. */
+    boolean isMissingLibrary(String library) {
+        return (filter != null && !filter.mightContain(library)) || missing.getIfPresent(library) != null;
+    }
+
+    /** Returns true if the asset is known not to exist. */
+    boolean isMissing(AssetId id) {
+        // The filter only knows about the versions of libraries that are served by default
+        String key = toKey(id);
+        return (filter != null && id.version == null && !filter.mightContain(key))
+                || missing.getIfPresent(key) != null;
+    }
+
+    void addLibrary(String library) {
+        missing.put(library, Boolean.TRUE);
+    }
+
+    void add(AssetId id) {
+        missing.put(toKey(id), Boolean.TRUE);
+    }
+
+    /** Returns the cache of missing libraries and assets, so that its statistics can be reported. */
+    Cache<String, Boolean> getCache() {
+        return missing;
+    }
+
+    /** Returns the Bloom filter of libraries and assets that exist, or {@code null} if there isn't one. */
+    BloomFilter<CharSequence> getFilter() {
+        return filter;
+    }
+
+    /** Build a Bloom filter containing every library and asset in an index. */
+    static BloomFilter<CharSequence> buildFilter(WebJarIndex index) {
+        int count = 0;
+        for (String library : index.getLibraries()) {
+            count += 1 + index.getResources(library).size();
+        }
+
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8),
+                Math.max(count, 1), BLOOM_FILTER_FPP);
+        for (String library : index.getLibraries()) {
+            filter.put(library);
+            for (String resource : index.getResources(library)) {
+                filter.put(toKey(new AssetId(library, resource)));
+            }
+        }
+
+        return filter;
+    }
+
+    private static String toKey(AssetId id) {
+        return (id.version != null)
+                ? id.library + '/' + id.version + '/' + id.resource
+                : id.library + '/' + id.resource;
+    }
+}
@@ -0,0 +1,211 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An asset cache split into partitions, each a cache of its own with its own budget, so that large assets that are
+ * rarely asked for, like source maps and fonts, can't push the small scripts and stylesheets every page needs out of
+ * the cache, and so that the libraries every page needs can be kept cached for good.  Each asset lives in the first
+ * partition it belongs to, or in the rest of the cache if it doesn't belong to any.
+ */
+class PartitionedAssetCache implements AssetCache {
+    private final List<Partition> partitions;
+    private final AssetCache rest;
+
+    PartitionedAssetCache(AssetCacheConfiguration configuration, CacheLoader<AssetId, Asset> loader) {
+        ImmutableList.Builder<Partition> partitions = ImmutableList.builder();
+        for (Map.Entry<String, AssetCachePartitionConfiguration> entry : configuration.getPartitions().entrySet()) {
+            partitions.add(new Partition(entry.getKey(), entry.getValue()));
+        }
+        this.partitions = partitions.build();
+
+        for (int i = 0; i < this.partitions.size(); i++) {
+            Partition partition = this.partitions.get(i);
+            partition.cache = configuration.forPartition(partition.configuration)
+                    .build(new PartitionLoader(i, loader));
+        }
+        rest = configuration.getType().create(configuration, new PartitionLoader(this.partitions.size(), loader));
+    }
+
+    /** Returns the cache of each partition, by name, in the order that assets are matched against them. */
+    Map<String, AssetCache> getPartitions() {
+        ImmutableMap.Builder<String, AssetCache> caches = ImmutableMap.builder();
+        for (Partition partition : partitions) {
+            caches.put(partition.name, partition.cache);
+        }
+
+        return caches.build();
+    }
+
+    @Override
+    public Asset getIfPresent(AssetId id) {
+        return getCache(id).getIfPresent(id);
+    }
+
+    @Override
+    public Asset getUnchecked(AssetId id) {
+        return getCache(id).getUnchecked(id);
+    }
+
+    @Override
+    public Map<AssetId, Asset> getAll(Iterable<AssetId> ids) {
+        Map<AssetCache, Set<AssetId>> byCache = Maps.newLinkedHashMap();
+        for (AssetId id : ids) {
+            AssetCache cache = getCache(id);
+            Set<AssetId> cacheIds = byCache.get(cache);
+            if (cacheIds == null) {
+                cacheIds = Sets.newLinkedHashSet();
+                byCache.put(cache, cacheIds);
+            }
+            cacheIds.add(id);
+        }
+
+        if (byCache.size() == 1) {
+            Map.Entry<AssetCache, Set<AssetId>> entry = byCache.entrySet().iterator().next();
+            return entry.getKey().getAll(entry.getValue());
+        }
+
+        Map<AssetId, Asset> loaded = Maps.newHashMap();
+        for (Map.Entry<AssetCache, Set<AssetId>> entry : byCache.entrySet()) {
+            loaded.putAll(entry.getKey().getAll(entry.getValue()));
+        }
+
+        // Return the assets in the order they were asked for
+        Map<AssetId, Asset> assets = Maps.newLinkedHashMap();
+        for (AssetId id : ids) {
+            assets.put(id, loaded.get(id));
+        }
+        return assets;
+    }
+
+    @Override
+    public void invalidate(AssetId id) {
+        getCache(id).invalidate(id);
+    }
+
+    @Override
+    public long size() {
+        long size = rest.size();
+        for (Partition partition : partitions) {
+            size += partition.cache.size();
+        }
+
+        return size;
+    }
+
+    @Override
+    public long weight() {
+        long weight = rest.weight();
+        for (Partition partition : partitions) {
+            weight += partition.cache.weight();
+        }
+
+        return weight;
+    }
+
+    @Override
+    public CacheStats stats() {
+        CacheStats stats = rest.stats();
+        for (Partition partition : partitions) {
+            stats = stats.plus(partition.cache.stats());
+        }
+
+        return stats;
+    }
+
+    private AssetCache getCache(AssetId id) {
+        int index = indexOf(id);
+        return (index < partitions.size()) ? partitions.get(index).cache : rest;
+    }
+
+    /** Returns the index of the partition an asset belongs to, or the number of partitions if it belongs to none. */
+    private int indexOf(AssetId id) {
+        for (int i = 0; i < partitions.size(); i++) {
+            if (partitions.get(i).contains(id)) {
+                return i;
+            }
+        }
+
+        return partitions.size();
+    }
+
+    private static String getExtension(String resource) {
+        int slash = resource.lastIndexOf('/');
+        int dot = resource.lastIndexOf('.');
+        return (dot > slash) ? resource.substring(dot + 1).toLowerCase() : "";
+    }
+
+    private static class Partition {
+        final String name;
+        final AssetCachePartitionConfiguration configuration;
+        final Set<String> libraries;
+        final Set<String> extensions;
+        AssetCache cache;
+
+        Partition(String name, AssetCachePartitionConfiguration configuration) {
+            this.name = name;
+            this.configuration = configuration;
+            this.libraries = ImmutableSet.copyOf(configuration.getLibraries());
+
+            ImmutableSet.Builder<String> extensions = ImmutableSet.builder();
+            for (String extension : configuration.getExtensions()) {
+                extensions.add(extension.toLowerCase());
+            }
+            this.extensions = extensions.build();
+        }
+
+        boolean contains(AssetId id) {
+            return (libraries.isEmpty() || libraries.contains(id.library))
+                    && (extensions.isEmpty() || extensions.contains(getExtension(id.resource)));
+        }
+    }
+
+    /**
+     * Loads the assets of a partition.  A bulk load reads a library's other small assets along with the ones asked
+     * for, and only those that belong to the partition are kept, so that a bulk load can't fill a partition with
+     * assets that belong in another.
+     */
+    private class PartitionLoader extends CacheLoader<AssetId, Asset> {
+        private final int index;
+        private final CacheLoader<AssetId, Asset> loader;
+
+        PartitionLoader(int index, CacheLoader<AssetId, Asset> loader) {
+            this.index = index;
+            this.loader = loader;
+        }
+
+        @Override
+        public Asset load(AssetId id) throws Exception {
+            return loader.load(id);
+        }
+
+        @Override
+        public ListenableFuture<Asset> reload(AssetId id, Asset oldAsset) throws Exception {
+            return loader.reload(id, oldAsset);
+        }
+
+        @Override
+        public Map<AssetId, Asset> loadAll(Iterable<? extends AssetId> ids) throws Exception {
+            Set<AssetId> wanted = ImmutableSet.copyOf(ids);
+            Map<AssetId, Asset> assets = Maps.newLinkedHashMap();
+            for (Map.Entry<AssetId, Asset> entry : loader.loadAll(wanted).entrySet()) {
+                if (wanted.contains(entry.getKey()) || indexOf(entry.getKey()) == index) {
+                    assets.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            return assets;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The Link headers that tell a browser to start fetching the rest of the assets a page is going to need as soon as it
+ * gets one of them, instead of discovering them one round trip at a time.
+ * <p/>
+ * Each library has a few entry assets, the stylesheets and scripts a page includes to use it.  Unless they're
+ * configured they are the resources named after the library, for example {@code css/bootstrap.css} and
+ * {@code js/bootstrap.js}.  A response with one of a library's entry assets preloads the library's other entry assets
+ * along with the entry assets of every library it depends on according to the {@link DependencyGraph}.  The header
+ * for each asset is only put together once, so sending it costs a map lookup.
+ */
+class PreloadLinks {
+    private static final String NONE = "";
+    private static final Joiner JOINER = Joiner.on(", ");
+    private static final Map<String, String> DESTINATIONS = ImmutableMap.of(
+            ".css", "style",
+            ".js", "script");
+
+    private final DependencyGraph graph;
+    private final Supplier<WebJarIndex> index;
+    private final Map<String, List<String>> configuredEntryPoints;
+    private final ConcurrentMap<String, List<String>> entryPoints = Maps.newConcurrentMap();
+    private final ConcurrentMap<AssetId, String> links = Maps.newConcurrentMap();
+    private final ConcurrentMap<AssetId, String> versionedLinks = Maps.newConcurrentMap();
+
+    PreloadLinks(DependencyGraph graph, Supplier<WebJarIndex> index, Map<String, List<String>> entryPoints) {
+        this.graph = graph;
+        this.index = index;
+        this.configuredEntryPoints = entryPoints;
+    }
+
+    /**
+     * Returns the value of the Link header to send with an asset, or {@code null} if it isn't one of its library's
+     * entry assets or there's nothing to preload.  Versioned URLs are preloaded when the asset was asked for with one,
+     * since that's how the page refers to its assets.  The context path is assumed never to change.
+     */
+    String get(AssetId id, boolean versioned, String contextPath) {
+        ConcurrentMap<AssetId, String> cache = versioned ? versionedLinks : links;
+        String header = cache.get(id);
+        if (header == null) {
+            header = build(id, versioned, contextPath);
+            String existing = cache.putIfAbsent(id, header);
+            if (existing != null) {
+                header = existing;
+            }
+        }
+
+        return (header != NONE) ? header : null;
+    }
+
+    /** Returns the entry assets of a library, stylesheets first. */
+    List<String> getEntryPoints(String library) {
+        List<String> resources = entryPoints.get(library);
+        if (resources == null) {
+            List<String> configured = configuredEntryPoints.get(library);
+            resources = (configured != null) ? ImmutableList.copyOf(configured) : findEntryPoints(library);
+            List<String> existing = entryPoints.putIfAbsent(library, resources);
+            if (existing != null) {
+                resources = existing;
+            }
+        }
+
+        return resources;
+    }
+
+    private String build(AssetId id, boolean versioned, String contextPath) {
+        // Assets of versions other than the resolved one aren't part of the dependency graph
+        if (id.version != null || !getEntryPoints(id.library).contains(id.resource)) {
+            return NONE;
+        }
+
+        List<String> values = Lists.newArrayList();
+        addLinks(values, id.library, id.resource, versioned, contextPath);
+        for (String dependency : graph.getTransitiveDependencies(id.library)) {
+            addLinks(values, dependency, null, versioned, contextPath);
+        }
+
+        return !values.isEmpty() ? JOINER.join(values) : NONE;
+    }
+
+    private void addLinks(List<String> values, String library, String except, boolean versioned, String contextPath) {
+        // A dependency that isn't in the classpath can't be preloaded
+        String version = index.get().getVersion(library);
+        if (version == null) {
+            return;
+        }
+
+        for (String resource : getEntryPoints(library)) {
+            String destination = getDestination(resource);
+            if (destination == null || resource.equals(except)) {
+                continue;
+            }
+
+            String url = contextPath + WebJarServlet.URL_PREFIX + library + '/'
+                    + (versioned ? version + '/' : "") + resource;
+            values.add('<' + url + ">; rel=preload; as=" + destination);
+        }
+    }
+
+    private List<String> findEntryPoints(String library) {
+        List<String> stylesheets = Lists.newArrayList();
+        List<String> scripts = Lists.newArrayList();
+        for (String resource : index.get().getResources(library)) {
+            String name = resource.substring(resource.lastIndexOf('/') + 1);
+            if (name.equals(library + ".css")) {
+                stylesheets.add(resource);
+            } else if (name.equals(library + ".js")) {
+                scripts.add(resource);
+            }
+        }
+
+        Collections.sort(stylesheets);
+        Collections.sort(scripts);
+        return ImmutableList.copyOf(Iterables.concat(stylesheets, scripts));
+    }
+
+    /** Returns the kind of request that a browser would make for a resource, or {@code null} for anything else. */
+    private static String getDestination(String resource) {
+        int dot = resource.lastIndexOf('.');
+        return (dot >= 0) ? DESTINATIONS.get(resource.substring(dot)) : null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An asset cache that never evicts anything, meant for applications that preload every asset they serve.  It's a
+ * plain concurrent map, so once the assets have been loaded looking one up is a single hash lookup with no eviction
+ * bookkeeping at all.  Assets that weren't preloaded are still loaded when they're first asked for, and kept.
+ */
+class PreloadedAssetCache extends AbstractAssetCache {
+    private final ConcurrentMap<AssetId, Asset> assets = Maps.newConcurrentMap();
+    private final AssetCacheWeigher weigher;
+
+    PreloadedAssetCache(AssetCacheWeigher weigher, CacheLoader<AssetId, Asset> loader) {
+        super(loader);
+        this.weigher = weigher;
+    }
+
+    @Override
+    protected Asset lookup(AssetId id) {
+        return assets.get(id);
+    }
+
+    @Override
+    protected void store(AssetId id, Asset asset) {
+        assets.put(id, asset);
+    }
+
+    @Override
+    public void invalidate(AssetId id) {
+        assets.remove(id);
+    }
+
+    @Override
+    public long size() {
+        return assets.size();
+    }
+
+    @Override
+    public long weight() {
+        long weight = 0;
+        for (Asset asset : assets.values()) {
+            weight += weigher.weigh(asset);
+        }
+
+        return weight;
+    }
+}
@@ -0,0 +1,285 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An asset cache with a W-TinyLFU eviction policy.  New assets go into a small window that is kept in least recently
+ * used order.  Assets that fall out of the window only make it into the main part of the cache if they have been asked
+ * for more often than the asset they would push out, according to a {@link FrequencySketch} of how often every asset
+ * has been asked for recently.  The main part is split into a probation and a protected segment, so that an asset has
+ * to be asked for again before it's safe from eviction.  This keeps a scan through rarely used assets from flushing out
+ * the small set of assets that are used all the time, which a least recently used cache can't do.
+ * <p>
+ * Looking an asset up only reads a concurrent map.  Hits are recorded in small lossy buffers that are applied to the
+ * policy in batches by whichever thread gets the lock first, so readers never wait for each other or for the policy.
+ * <p>
+ * The policy and its admission of assets into the main part of the cache follow Caffeine's {@code BoundedLocalCache}
+ * (https://github.com/ben-manes/caffeine), Copyright 2015 Ben Manes, licensed under the Apache License, Version 2.0.
+ */
+class TinyLfuAssetCache extends AbstractAssetCache {
+    /** The share of the cache's weight given to the window. */
+    private static final double WINDOW_FRACTION = 0.01;
+
+    /** The share of the main part of the cache's weight given to the protected segment. */
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    /** A guess at the size of an asset, for sizing the frequency sketch of a cache weighed in bytes. */
+    private static final long ESTIMATED_ASSET_SIZE = 4096;
+
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int READ_BUFFER_DRAIN_MASK = 16 - 1;
+    private static final int READ_BUFFERS =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+
+    private final ConcurrentMap<AssetId, Node> data = Maps.newConcurrentMap();
+    private final AssetCacheWeigher weigher;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFERS];
+
+    // Everything from here on is guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Segment window = new Segment();
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+
+    TinyLfuAssetCache(long maximumWeight, AssetCacheWeigher weigher, CacheLoader<AssetId, Asset> loader) {
+        super(loader);
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_FRACTION));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_FRACTION);
+        this.sketch = new FrequencySketch((weigher == AssetCacheWeigher.BYTES)
+                ? maximumWeight / ESTIMATED_ASSET_SIZE
+                : maximumWeight);
+
+        for (int i = 0; i < READ_BUFFERS; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    @Override
+    protected Asset lookup(AssetId id) {
+        Node node = data.get(id);
+        if (node == null) {
+            return null;
+        }
+
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFERS - 1)];
+        if (buffer.offer(node) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return node.asset;
+    }
+
+    @Override
+    protected void store(AssetId id, Asset asset) {
+        Node node = new Node(id, asset, weigher.weigh(asset));
+
+        lock.lock();
+        try {
+            drainReadBuffers();
+
+            Node previous = data.put(id, node);
+            if (previous != null && previous.segment != null) {
+                previous.segment.remove(previous);
+            }
+
+            sketch.increment(id);
+            window.add(node);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(AssetId id) {
+        lock.lock();
+        try {
+            Node node = data.remove(id);
+            if (node != null && node.segment != null) {
+                node.segment.remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return data.size();
+    }
+
+    @Override
+    public long weight() {
+        lock.lock();
+        try {
+            return window.weight + probation.weight + protectedSegment.weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node node = buffer.slots.getAndSet(i, null);
+                if (node != null && node.segment != null) {
+                    onAccess(node);
+                }
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.id);
+
+        if (node.segment == probation) {
+            // Asked for again while on probation, the asset has earned a place in the protected segment
+            probation.remove(node);
+            protectedSegment.add(node);
+            while (protectedSegment.weight > protectedMaximum && protectedSegment.first() != null) {
+                Node demoted = protectedSegment.first();
+                protectedSegment.remove(demoted);
+                probation.add(demoted);
+            }
+        } else {
+            node.segment.moveToEnd(node);
+        }
+    }
+
+    /**
+     * Move the assets that no longer fit in the window to the main part of the cache, and then evict assets until the
+     * whole cache fits.  Each asset that came from the window is a candidate that has to be asked for more often than
+     * the least recently used asset on probation to be kept.
+     */
+    private void evict() {
+        int candidates = 0;
+        while (window.weight > windowMaximum && window.first() != null) {
+            Node node = window.first();
+            window.remove(node);
+            probation.add(node);
+            candidates++;
+        }
+
+        while (window.weight + probation.weight + protectedSegment.weight > maximumWeight) {
+            Node victim = probation.first();
+            if (victim == null) {
+                victim = (protectedSegment.first() != null) ? protectedSegment.first() : window.first();
+                if (victim == null) {
+                    break;
+                }
+
+                evict(victim);
+                continue;
+            }
+
+            Node candidate = (candidates > 0) ? probation.last() : null;
+            if (candidate == null || candidate == victim) {
+                evict(victim);
+                candidates = Math.max(0, candidates - 1);
+            } else if (sketch.frequency(candidate.id) > sketch.frequency(victim.id)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        node.segment.remove(node);
+        data.remove(node.id, node);
+        recordEviction();
+    }
+
+    /** An asset in the cache, linked into the segment of the policy it's in. */
+    private static class Node {
+        final AssetId id;
+        final Asset asset;
+        final int weight;
+
+        // Guarded by the lock.  The segment is null once the node has been removed from the cache.
+        Segment segment;
+        Node previous;
+        Node next;
+
+        Node(AssetId id, Asset asset, int weight) {
+            this.id = id;
+            this.asset = asset;
+            this.weight = weight;
+        }
+    }
+
+    /** A segment of the policy, a doubly linked list of nodes from least to most recently used. */
+    private static class Segment {
+        private final Node head = new Node(null, null, 0);
+        long weight;
+
+        Segment() {
+            head.previous = head;
+            head.next = head;
+        }
+
+        Node first() {
+            return (head.next != head) ? head.next : null;
+        }
+
+        Node last() {
+            return (head.previous != head) ? head.previous : null;
+        }
+
+        void add(Node node) {
+            node.segment = this;
+            node.previous = head.previous;
+            node.next = head;
+            head.previous.next = node;
+            head.previous = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            node.segment = null;
+            weight -= node.weight;
+        }
+
+        void moveToEnd(Node node) {
+            remove(node);
+            add(node);
+        }
+    }
+
+    /**
+     * A buffer of recent hits.  Hits are dropped rather than waited for when the buffer fills up before it's drained,
+     * which only makes the policy slightly less accurate.
+     */
+    private static class ReadBuffer {
+        final AtomicLong writes = new AtomicLong();
+        final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+
+        /** Record a hit, returning true if it's time for the buffer to be drained. */
+        boolean offer(Node node) {
+            long count = writes.getAndIncrement();
+            slots.lazySet((int) count & (READ_BUFFER_SIZE - 1), node);
+            return (count & READ_BUFFER_DRAIN_MASK) == READ_BUFFER_DRAIN_MASK;
+        }
+    }
+}
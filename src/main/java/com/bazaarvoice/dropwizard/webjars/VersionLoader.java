@@ -1,53 +1,66 @@
 package com.bazaarvoice.dropwizard.webjars;
 
-import com.google.common.cache.CacheLoader;
+import com.google.common.base.Objects;
+import com.google.common.collect.Sets;
 import com.google.common.io.Closer;
-import com.google.common.io.Resources;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 /**
- * Determines the version of the webjar that's in the classpath for a particular library.
+ * Determines the versions of the webjars that are in the classpath for a particular library.
  * <p/>
  * The version of a webjar can be determined by looking at the <code>pom.properties</code> file located at
  * {@code META-INF/maven/<group>/<library>/pom.properties}.
  * <p/>
  * Where {@code <group>} is the name of the maven group the webjar artifact is part of, and {@code <library>} is the
- * name of the library.
+ * name of the library.  Every jar in the classpath with such a file for one of the groups contributes a version, and
+ * the first one found in the earliest group is the version that's served by default.
  */
-class VersionLoader extends CacheLoader<String, String> {
-    public static final String NOT_FOUND = "VERSION-NOT-FOUND";
-
+class VersionLoader {
     private final Iterable<String> groups;
 
     VersionLoader(Iterable<String> groups) {
         this.groups = groups;
     }
 
-    @Override
-    public String load(String library) throws Exception {
+    /** Find the versions of a library, or return {@code null} if there isn't a webjar for it in any of the groups. */
+    LibraryVersions load(String library) {
+        ClassLoader classLoader = Objects.firstNonNull(
+                Thread.currentThread().getContextClassLoader(),
+                VersionLoader.class.getClassLoader());
+
+        String version = null;
+        Set<String> versions = Sets.newLinkedHashSet();
         for (String group : groups) {
-            String found = tryToLoadFrom("META-INF/maven/%s/%s/pom.properties", group, library);
-            if (found != null) {
-                return found;
+            for (URL url : findResources(classLoader, "META-INF/maven/%s/%s/pom.properties", group, library)) {
+                String found = tryToLoadFrom(url);
+                if (found != null) {
+                    if (version == null) {
+                        version = found;
+                    }
+                    versions.add(found);
+                }
             }
         }
 
-        return NOT_FOUND;
+        return (version != null) ? new LibraryVersions(version, versions) : null;
     }
 
-    private String tryToLoadFrom(String format, String group, String library) {
+    private Iterable<URL> findResources(ClassLoader classLoader, String format, String group, String library) {
         String path = String.format(format, group, library);
-        URL url;
         try {
-            url = Resources.getResource(path);
-        } catch (IllegalArgumentException e) {
-            return null;
+            return Collections.list(classLoader.getResources(path));
+        } catch (IOException e) {
+            return Collections.emptyList();
         }
+    }
 
+    private String tryToLoadFrom(URL url) {
         try {
             Closer closer = Closer.create();
             InputStream in = closer.register(url.openStream());
@@ -63,4 +76,4 @@ class VersionLoader extends CacheLoader<String, String> {
             return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The versions of every library that has been asked about.  Each library is resolved exactly once, the first time it's
+ * needed, even if many threads ask for it at the same time.  After that its versions never change, so looking them up
+ * is a single read of a concurrent map and the registry can hold every WebJar in the classpath without any limit.
+ * Libraries that don't exist aren't kept, remembering those is up to {@link NegativeCache}.
+ */
+class VersionRegistry {
+    private final VersionLoader loader;
+    private final ConcurrentMap<String, Future<LibraryVersions>> libraries = Maps.newConcurrentMap();
+
+    VersionRegistry(VersionLoader loader) {
+        this.loader = loader;
+    }
+
+    /** Returns the versions of a library, or {@code null} if there isn't a WebJar for it. */
+    LibraryVersions get(final String library) {
+        Future<LibraryVersions> future = libraries.get(library);
+        if (future == null) {
+            FutureTask<LibraryVersions> task = new FutureTask<LibraryVersions>(new Callable<LibraryVersions>() {
+                @Override
+                public LibraryVersions call() throws Exception {
+                    return loader.load(library);
+                }
+            });
+
+            future = libraries.putIfAbsent(library, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        LibraryVersions versions = Futures.getUnchecked(future);
+        if (versions == null) {
+            libraries.remove(library, future);
+        }
+
+        return versions;
+    }
+
+    /** Returns the number of libraries that have been resolved. */
+    int size() {
+        return libraries.size();
+    }
+}
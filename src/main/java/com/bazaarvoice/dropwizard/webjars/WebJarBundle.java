@@ -6,16 +6,20 @@ import io.dropwizard.Bundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 
+import javax.servlet.ServletRegistration;
 import java.util.Collections;
 import java.util.List;
 
 public class WebJarBundle implements Bundle {
     private CacheBuilder cacheBuilder = null;
+    private WebJarConfiguration configuration = new WebJarConfiguration();
     private List<String> packages = Lists.newArrayList(WebJarServlet.DEFAULT_MAVEN_GROUPS);
 
     public WebJarBundle() {
     }
 
+    /** @deprecated Configure the cache with {@link WebJarConfiguration#setCache} instead. */
+    @Deprecated
     public WebJarBundle(CacheBuilder builder) {
         cacheBuilder = builder;
     }
@@ -24,18 +28,44 @@ public class WebJarBundle implements Bundle {
         Collections.addAll(packages, additionalPackages);
     }
 
+    /** @deprecated Configure the cache with {@link WebJarConfiguration#setCache} instead. */
+    @Deprecated
     public WebJarBundle(CacheBuilder builder, String... additionalPackages) {
         cacheBuilder = builder;
         Collections.addAll(packages, additionalPackages);
     }
 
+    public WebJarBundle(WebJarConfiguration configuration, String... additionalPackages) {
+        this.configuration = configuration;
+        Collections.addAll(packages, additionalPackages);
+    }
+
+    /** @deprecated Configure the cache with {@link WebJarConfiguration#setCache} instead. */
+    @Deprecated
+    public WebJarBundle(WebJarConfiguration configuration, CacheBuilder builder, String... additionalPackages) {
+        this.configuration = configuration;
+        cacheBuilder = builder;
+        Collections.addAll(packages, additionalPackages);
+    }
+
     @Override
     public void initialize(Bootstrap<?> bootstrap) {
     }
 
     @Override
     public void run(Environment environment) {
-        WebJarServlet servlet = new WebJarServlet(cacheBuilder, packages);
-        environment.servlets().addServlet("webjars", servlet).addMapping(WebJarServlet.URL_PREFIX + "*");
+        WebJarServlet servlet = new WebJarServlet(cacheBuilder, packages, configuration, environment.metrics());
+        ServletRegistration.Dynamic registration = environment.servlets().addServlet("webjars", servlet);
+        registration.addMapping(WebJarServlet.URL_PREFIX + "*");
+        if (configuration.isCombo()) {
+            registration.addMapping(WebJarServlet.COMBO_PATH);
+        }
+        registration.setAsyncSupported(configuration.isAsync());
+
+        if (!configuration.getPreload().isEmpty() || configuration.getPreloadMaximumSize() > 0) {
+            AssetPreloader preloader = new AssetPreloader(servlet, configuration);
+            environment.lifecycle().manage(preloader);
+            environment.healthChecks().register("webjars-preload", preloader.getHealthCheck());
+        }
     }
 }
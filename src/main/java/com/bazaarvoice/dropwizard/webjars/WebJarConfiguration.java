@@ -0,0 +1,490 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Map;
+
+/** Optional settings that control how the WebJar bundle locates and serves assets. */
+public class WebJarConfiguration {
+    /**
+     * Whether or not an index of every WebJar on the classpath should be built when the bundle starts.  When enabled
+     * all library, version and resource lookups are answered from the index without touching the classloader.
+     */
+    @JsonProperty
+    private boolean classpathIndex = false;
+
+    /**
+     * Whether or not compressible assets should be gzipped once when they're loaded, and served compressed to clients
+     * that accept it.  The compressed form of an asset is cached along with it and counts towards the cache's maximum
+     * weight, so enabling this may call for a bigger cache.
+     */
+    @JsonProperty
+    private boolean gzip = false;
+
+    /** Assets smaller than this many bytes aren't worth compressing and are always served as is. */
+    @Min(0)
+    @JsonProperty
+    private int gzipMinimumSize = 256;
+
+    /** Where the bytes of cached assets are kept, either on the Java heap or in direct buffers outside of it. */
+    @NotNull
+    @JsonProperty
+    private AssetStorage storage = AssetStorage.HEAP;
+
+    /**
+     * Whether or not requests that don't include a version should be redirected to the URL for the version of the
+     * library that is present.  Versioned URLs can be cached by clients forever, so once they have been redirected
+     * clients never need to revalidate the asset.
+     */
+    @JsonProperty
+    private boolean redirectToVersionedUrls = false;
+
+    /** How long clients may cache a redirect to a versioned URL for. */
+    @NotNull
+    @JsonProperty
+    private Duration redirectMaxAge = Duration.minutes(5);
+
+    /**
+     * Assets that should be loaded into the cache when the application starts.  Each entry is a library name
+     * optionally followed by a glob of the resources to load, for example {@code jquery} or
+     * {@code bootstrap/css/*.css}.  A {@code *} matches within a directory and a {@code **} matches across them.
+     */
+    @NotNull
+    @JsonProperty
+    private List<String> preload = Lists.newArrayList();
+
+    /** When greater than zero, every asset in every WebJar that is no larger than this many bytes is preloaded. */
+    @Min(0)
+    @JsonProperty
+    private long preloadMaximumSize = 0;
+
+    /** The number of threads used to preload assets in parallel. */
+    @Min(1)
+    @JsonProperty
+    private int preloadThreads = 4;
+
+    /**
+     * The maximum number of libraries that get their own request counter.  Requests for libraries beyond this limit
+     * are counted together, so that the number of metrics stays bounded.
+     */
+    @Min(0)
+    @JsonProperty
+    private int maximumLibraryMetrics = 100;
+
+    /**
+     * The maximum number of libraries and assets that are remembered as not existing.  Requests for them are answered
+     * with a 404 without looking in the classpath again.  Set to 0 to disable remembering missing assets.
+     */
+    @Min(0)
+    @JsonProperty
+    private long negativeCacheMaximumSize = 10000;
+
+    /** How long a library or asset is remembered as not existing for. */
+    @NotNull
+    @JsonProperty
+    private Duration negativeCacheTtl = Duration.minutes(5);
+
+    /**
+     * Whether or not a Bloom filter of every library and asset on the classpath should be built when the bundle
+     * starts.  Requests for things the filter knows don't exist are rejected without touching the cache or the
+     * classloader.  This costs far less memory than {@link #classpathIndex}, which makes the filter unnecessary.
+     */
+    @JsonProperty
+    private boolean bloomFilter = false;
+
+    /**
+     * Whether or not requests should be handled asynchronously.  Assets that aren't cached are loaded by a separate
+     * pool of loader threads, and with Jetty the bytes of an asset are written without blocking, so slow clients
+     * don't tie up the container's threads.
+     */
+    @JsonProperty
+    private boolean async = false;
+
+    /**
+     * Whether or not assets that aren't cached should be loaded by the pool of loader threads rather than on request
+     * threads, even when requests aren't handled asynchronously.  Concurrent requests for the same asset wait for a
+     * single load, and requests that wait longer than the load timeout get a 503.  Loads are always bounded when
+     * requests are handled asynchronously.
+     */
+    @JsonProperty
+    private boolean boundedLoading = false;
+
+    /** The number of threads that load assets when loads are bounded or requests are asynchronous. */
+    @Min(1)
+    @JsonProperty
+    private int loaderThreads = 4;
+
+    /**
+     * The maximum number of loads that can be waiting for a loader thread.  Requests for assets beyond this are
+     * rejected with a 503.
+     */
+    @Min(1)
+    @JsonProperty
+    private int loaderQueueSize = 1000;
+
+    /** How long a request waits for its asset to be loaded by a loader thread before it gets a 503. */
+    @NotNull
+    @JsonProperty
+    private Duration loadTimeout = Duration.seconds(10);
+
+    /**
+     * How long an asynchronous request can take altogether before the container gives up on it, or zero for no limit.
+     * Loads are already limited by the load timeout and slow clients by the connector's idle timeout, so there's no
+     * limit by default that could cut a response off while a client is still reading it.
+     */
+    @NotNull
+    @JsonProperty
+    private Duration asyncTimeout = Duration.milliseconds(0);
+
+    /**
+     * Whether or not a JSON manifest of every library's resolved version and resources, including the Subresource
+     * Integrity value of each resource, is served at {@code /webjars/manifest.json}.
+     */
+    @JsonProperty
+    private boolean manifest = false;
+
+    /**
+     * Whether or not requests for scripts and stylesheets should be served from their minified siblings, for example
+     * {@code jquery.min.js} for {@code jquery.js}, when the WebJar includes them.  The source map of a minified asset
+     * is linked to with a SourceMap header.
+     */
+    @JsonProperty
+    private boolean preferMinified = false;
+
+    /**
+     * A directory that loaded assets are also cached in, along with their hashes and compressed forms.  Assets that
+     * have been evicted from the in-memory cache, or that were loaded before a restart, are read back from it instead
+     * of from the classpath.  No disk cache is used when this isn't set.
+     */
+    @JsonProperty
+    private String diskCacheDirectory = null;
+
+    /**
+     * Whether or not responses with a library's main stylesheets and scripts should include a Link header that tells
+     * the browser to preload the main stylesheets and scripts of the libraries it depends on, according to the
+     * dependencies declared in the WebJars' poms.
+     */
+    @JsonProperty
+    private boolean preloadLinks = false;
+
+    /**
+     * The main stylesheets and scripts of libraries whose main resources aren't named after the library, for example
+     * {@code angularjs: [angular.js]}.  Resources are listed in the order they should be preloaded in.
+     */
+    @NotNull
+    @JsonProperty
+    private Map<String, List<String>> preloadEntryPoints = Maps.newHashMap();
+
+    /**
+     * Whether or not combinations of assets of the same media type are served at {@code /webjars-combo}, for example
+     * {@code /webjars-combo?bootstrap/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css}.
+     */
+    @JsonProperty
+    private boolean combo = false;
+
+    /** The total size in bytes of the combinations of assets that are kept once they've been put together. */
+    @Min(0)
+    @JsonProperty
+    private long comboMaximumWeight = 5 * 1024 * 1024;
+
+    /**
+     * Whether or not the first asset loaded from a library should read the rest of the library's small resources from
+     * its jar at the same time, in a single pass, so that they're already cached when the page asks for them.
+     */
+    @JsonProperty
+    private boolean bulkLoad = false;
+
+    /** The largest resource, in bytes, that is read when a library is loaded in bulk. */
+    @Min(0)
+    @JsonProperty
+    private long bulkLoadMaximumSize = 32 * 1024;
+
+    /** The most resources of a library that are read when it's loaded in bulk. */
+    @Min(0)
+    @JsonProperty
+    private int bulkLoadMaximumCount = 100;
+
+    /**
+     * Whether or not assets with identical bytes, such as the copies of the same file that different WebJars include,
+     * should share a single copy of them.  Every asset still counts its full size against the cache's maximum weight.
+     */
+    @JsonProperty
+    private boolean deduplicate = false;
+
+    /**
+     * Whether or not assets should be served from the asset pack written by the webjars maven plugin, when the
+     * classpath contains one that was written with the same groups and settings.  A library is only served from the
+     * pack if the pack has the same version of it as the classpath.
+     */
+    @JsonProperty
+    private boolean packedAssets = false;
+
+    /** Which kind of cache loaded assets are kept in, and how big it is. */
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AssetCacheConfiguration cache = new AssetCacheConfiguration();
+
+    public boolean isClasspathIndex() {
+        return classpathIndex;
+    }
+
+    public void setClasspathIndex(boolean classpathIndex) {
+        this.classpathIndex = classpathIndex;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public int getGzipMinimumSize() {
+        return gzipMinimumSize;
+    }
+
+    public void setGzipMinimumSize(int gzipMinimumSize) {
+        this.gzipMinimumSize = gzipMinimumSize;
+    }
+
+    public AssetStorage getStorage() {
+        return storage;
+    }
+
+    public void setStorage(AssetStorage storage) {
+        this.storage = storage;
+    }
+
+    public boolean isRedirectToVersionedUrls() {
+        return redirectToVersionedUrls;
+    }
+
+    public void setRedirectToVersionedUrls(boolean redirectToVersionedUrls) {
+        this.redirectToVersionedUrls = redirectToVersionedUrls;
+    }
+
+    public Duration getRedirectMaxAge() {
+        return redirectMaxAge;
+    }
+
+    public void setRedirectMaxAge(Duration redirectMaxAge) {
+        this.redirectMaxAge = redirectMaxAge;
+    }
+
+    public List<String> getPreload() {
+        return preload;
+    }
+
+    public void setPreload(List<String> preload) {
+        this.preload = preload;
+    }
+
+    public long getPreloadMaximumSize() {
+        return preloadMaximumSize;
+    }
+
+    public void setPreloadMaximumSize(long preloadMaximumSize) {
+        this.preloadMaximumSize = preloadMaximumSize;
+    }
+
+    public int getPreloadThreads() {
+        return preloadThreads;
+    }
+
+    public void setPreloadThreads(int preloadThreads) {
+        this.preloadThreads = preloadThreads;
+    }
+
+    public int getMaximumLibraryMetrics() {
+        return maximumLibraryMetrics;
+    }
+
+    public void setMaximumLibraryMetrics(int maximumLibraryMetrics) {
+        this.maximumLibraryMetrics = maximumLibraryMetrics;
+    }
+
+    public long getNegativeCacheMaximumSize() {
+        return negativeCacheMaximumSize;
+    }
+
+    public void setNegativeCacheMaximumSize(long negativeCacheMaximumSize) {
+        this.negativeCacheMaximumSize = negativeCacheMaximumSize;
+    }
+
+    public Duration getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    public void setNegativeCacheTtl(Duration negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    public boolean isBloomFilter() {
+        return bloomFilter;
+    }
+
+    public void setBloomFilter(boolean bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getLoaderThreads() {
+        return loaderThreads;
+    }
+
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
+    public int getLoaderQueueSize() {
+        return loaderQueueSize;
+    }
+
+    public void setLoaderQueueSize(int loaderQueueSize) {
+        this.loaderQueueSize = loaderQueueSize;
+    }
+
+    public boolean isManifest() {
+        return manifest;
+    }
+
+    public void setManifest(boolean manifest) {
+        this.manifest = manifest;
+    }
+
+    public boolean isPreferMinified() {
+        return preferMinified;
+    }
+
+    public void setPreferMinified(boolean preferMinified) {
+        this.preferMinified = preferMinified;
+    }
+
+    public String getDiskCacheDirectory() {
+        return diskCacheDirectory;
+    }
+
+    public void setDiskCacheDirectory(String diskCacheDirectory) {
+        this.diskCacheDirectory = diskCacheDirectory;
+    }
+
+    public AssetCacheConfiguration getCache() {
+        return cache;
+    }
+
+    public void setCache(AssetCacheConfiguration cache) {
+        this.cache = cache;
+    }
+
+    public boolean isPreloadLinks() {
+        return preloadLinks;
+    }
+
+    public void setPreloadLinks(boolean preloadLinks) {
+        this.preloadLinks = preloadLinks;
+    }
+
+    public Map<String, List<String>> getPreloadEntryPoints() {
+        return preloadEntryPoints;
+    }
+
+    public void setPreloadEntryPoints(Map<String, List<String>> preloadEntryPoints) {
+        this.preloadEntryPoints = preloadEntryPoints;
+    }
+
+    public boolean isCombo() {
+        return combo;
+    }
+
+    public void setCombo(boolean combo) {
+        this.combo = combo;
+    }
+
+    public long getComboMaximumWeight() {
+        return comboMaximumWeight;
+    }
+
+    public void setComboMaximumWeight(long comboMaximumWeight) {
+        this.comboMaximumWeight = comboMaximumWeight;
+    }
+
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    public long getBulkLoadMaximumSize() {
+        return bulkLoadMaximumSize;
+    }
+
+    public void setBulkLoadMaximumSize(long bulkLoadMaximumSize) {
+        this.bulkLoadMaximumSize = bulkLoadMaximumSize;
+    }
+
+    public int getBulkLoadMaximumCount() {
+        return bulkLoadMaximumCount;
+    }
+
+    public void setBulkLoadMaximumCount(int bulkLoadMaximumCount) {
+        this.bulkLoadMaximumCount = bulkLoadMaximumCount;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isPackedAssets() {
+        return packedAssets;
+    }
+
+    public void setPackedAssets(boolean packedAssets) {
+        this.packedAssets = packedAssets;
+    }
+
+    public boolean isBoundedLoading() {
+        return boundedLoading;
+    }
+
+    public void setBoundedLoading(boolean boundedLoading) {
+        this.boundedLoading = boundedLoading;
+    }
+
+    public Duration getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    public void setLoadTimeout(Duration loadTimeout) {
+        this.loadTimeout = loadTimeout;
+    }
+
+    public Duration getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public void setAsyncTimeout(Duration asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+}
@@ -0,0 +1,404 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An index of every WebJar present in the classpath.
+ * <p/>
+ * The index is built once by scanning each jar file (or directory) in the classpath that contains either a
+ * {@code META-INF/resources/webjars/} or a {@code META-INF/maven/} entry.  After that library versions and resource
+ * paths can be determined with a hash lookup instead of asking the classloader, which means that requests for
+ * resources that don't exist never touch the classpath.
+ */
+class WebJarIndex {
+    static final String RESOURCES_PREFIX = "META-INF/resources/webjars/";
+    static final String MAVEN_PREFIX = "META-INF/maven/";
+    static final String POM_PROPERTIES = "pom.properties";
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebJarIndex.class);
+
+    /** The version of each library according to its pom.properties. */
+    private final Map<String, String> versions;
+
+    /** Every version of each library declared by a pom.properties, starting with the one in {@link #versions}. */
+    private final Map<String, Set<String>> allVersions;
+
+    /** Every resource belonging to the resolved version of a library. */
+    private final Map<String, Map<String, IndexedResource>> paths;
+
+    /** The sizes of the resources in each version directory of each library. */
+    private final Map<String, Map<String, Map<String, Long>>> resources;
+
+    private WebJarIndex(Map<String, String> versions, Map<String, Set<String>> allVersions,
+                        Map<String, Map<String, Map<String, Long>>> resources) {
+        this.versions = versions;
+        this.allVersions = allVersions;
+        this.resources = resources;
+
+        ImmutableMap.Builder<String, Map<String, IndexedResource>> paths = ImmutableMap.builder();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            Map<String, Map<String, Long>> byVersion = resources.get(entry.getKey());
+            if (byVersion != null) {
+                paths.put(entry.getKey(), resolvePaths(entry.getValue(), byVersion));
+            }
+        }
+        this.paths = paths.build();
+    }
+
+    /** Returns the version of the library declared in its pom.properties, or {@code null} if it is unknown. */
+    String getVersion(String library) {
+        return versions.get(library);
+    }
+
+    /**
+     * Returns every version of the library declared by a pom.properties, starting with the one returned by
+     * {@link #getVersion}.
+     */
+    Set<String> getVersions(String library) {
+        Set<String> libraryVersions = allVersions.get(library);
+        return (libraryVersions != null) ? libraryVersions : ImmutableSet.<String>of();
+    }
+
+    /**
+     * Returns the name of the version directory that a resource of a particular version of a library is contained
+     * in, or {@code null} if the resource doesn't exist.  Like the resolved version, -suffixes are removed from the
+     * version one at a time until a directory containing the resource is found.
+     */
+    String getResourceVersion(String library, String version, String resource) {
+        Map<String, Map<String, Long>> byVersion = resources.get(library);
+        if (byVersion == null) {
+            return null;
+        }
+
+        do {
+            Map<String, Long> candidates = byVersion.get(version);
+            if (candidates != null && candidates.containsKey(resource)) {
+                return version;
+            }
+
+            int hyphen = version.lastIndexOf('-');
+            if (hyphen == -1) {
+                return null;
+            }
+
+            version = version.substring(0, hyphen);
+        }
+        while (true);
+    }
+
+    /**
+     * Returns the name of the version directory that a resource of a library is contained in, or {@code null} if the
+     * resource doesn't exist.
+     */
+    String getResourceVersion(String library, String resource) {
+        IndexedResource indexed = get(library, resource);
+        return (indexed != null) ? indexed.version : null;
+    }
+
+    /** Returns the size in bytes of a resource of a library, or -1 if it doesn't exist or its size isn't known. */
+    long getSize(String library, String resource) {
+        IndexedResource indexed = get(library, resource);
+        return (indexed != null) ? indexed.size : -1;
+    }
+
+    /** Determines whether or not the resolved version of a library contains a particular resource. */
+    boolean contains(String library, String resource) {
+        return get(library, resource) != null;
+    }
+
+    /** Returns the names of all of the libraries that have a resolved version. */
+    Set<String> getLibraries() {
+        return paths.keySet();
+    }
+
+    /** Returns the names of all of the resources in the resolved version of a library. */
+    Set<String> getResources(String library) {
+        Map<String, IndexedResource> libraryPaths = paths.get(library);
+        return (libraryPaths != null) ? libraryPaths.keySet() : ImmutableSet.<String>of();
+    }
+
+    private IndexedResource get(String library, String resource) {
+        Map<String, IndexedResource> libraryPaths = paths.get(library);
+        return (libraryPaths != null) ? libraryPaths.get(resource) : null;
+    }
+
+    /**
+     * Determine where in the classpath each resource for a library lives.  This uses the same suffix stripping
+     * heuristic as {@link AssetLoader}, trying the most specific version first and then removing a -suffix at a time
+     * until a version directory containing the resource is found.
+     */
+    private static Map<String, IndexedResource> resolvePaths(String version,
+                                                             Map<String, Map<String, Long>> byVersion) {
+        Map<String, IndexedResource> paths = Maps.newHashMap();
+        do {
+            Map<String, Long> candidates = byVersion.get(version);
+            if (candidates != null) {
+                for (Map.Entry<String, Long> resource : candidates.entrySet()) {
+                    if (!paths.containsKey(resource.getKey())) {
+                        paths.put(resource.getKey(), new IndexedResource(version, resource.getValue()));
+                    }
+                }
+            }
+
+            int hyphen = version.lastIndexOf('-');
+            if (hyphen == -1) {
+                break;
+            }
+
+            version = version.substring(0, hyphen);
+        }
+        while (true);
+
+        return ImmutableMap.copyOf(paths);
+    }
+
+    /**
+     * Build an index of all of the WebJars visible to a classloader.  Versions are determined from the pom.properties
+     * of the given maven groups, with earlier groups taking precedence over later ones.
+     */
+    static WebJarIndex build(ClassLoader classLoader, Iterable<String> groups) throws IOException {
+        Scanner scanner = new Scanner();
+
+        // Find every jar file or directory that could contain WebJar content.  Each one is only scanned once even if
+        // it contains both resources and maven metadata.
+        Set<String> scanned = Sets.newHashSet();
+        for (String prefix : ImmutableList.of(RESOURCES_PREFIX, MAVEN_PREFIX)) {
+            Enumeration<URL> urls = classLoader.getResources(prefix);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                String container = getContainer(url, prefix);
+                if (container == null) {
+                    LOG.warn("Unable to index WebJars in {}, unsupported URL", url);
+                } else if (scanned.add(container)) {
+                    scanner.scan(url, prefix);
+                }
+            }
+        }
+
+        return scanner.toIndex(groups);
+    }
+
+    /** Determine the jar file or directory that a URL to a prefix is located in. */
+    private static String getContainer(URL url, String prefix) {
+        String spec = url.toExternalForm();
+        if (("jar".equals(url.getProtocol()) || "file".equals(url.getProtocol())) && spec.endsWith(prefix)) {
+            return spec.substring(0, spec.length() - prefix.length());
+        }
+
+        return null;
+    }
+
+    /** Collects the WebJar entries present in classpath containers. */
+    private static class Scanner {
+        /** The library versions declared by each maven group, in classpath order. */
+        private final Map<String, Map<String, Set<String>>> groupVersions = Maps.newHashMap();
+        private final Map<String, Map<String, Map<String, Long>>> resources = Maps.newHashMap();
+
+        void scan(URL url, String prefix) throws IOException {
+            if ("jar".equals(url.getProtocol())) {
+                scanJar(url);
+            } else {
+                String path = URLDecoder.decode(url.getPath(), "UTF-8");
+                scanDirectory(new File(path.substring(0, path.length() - prefix.length())), "");
+            }
+        }
+
+        private void scanJar(URL url) throws IOException {
+            JarURLConnection connection = (JarURLConnection) url.openConnection();
+
+            // Don't share the JarFile instance with the classloader, it's going to be closed when we're done with it
+            connection.setUseCaches(false);
+
+            Closer closer = Closer.create();
+            try {
+                JarFile jar = closer.register(connection.getJarFile());
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+
+                    if (entry.getName().startsWith(RESOURCES_PREFIX)) {
+                        addResource(entry.getName(), entry.getSize());
+                    } else if (isPomProperties(entry.getName())) {
+                        addPomProperties(entry.getName(), jar.getInputStream(entry));
+                    }
+                }
+            } catch (Throwable t) {
+                throw closer.rethrow(t, IOException.class);
+            } finally {
+                closer.close();
+            }
+        }
+
+        private void scanDirectory(File directory, String name) throws IOException {
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return;
+            }
+
+            for (File child : children) {
+                String childName = name + child.getName();
+                if (child.isDirectory()) {
+                    // Only descend into directories that can contain WebJar content
+                    String childPath = childName + '/';
+                    if (childPath.startsWith(RESOURCES_PREFIX) || RESOURCES_PREFIX.startsWith(childPath)
+                            || childPath.startsWith(MAVEN_PREFIX) || MAVEN_PREFIX.startsWith(childPath)) {
+                        scanDirectory(child, childPath);
+                    }
+                } else if (childName.startsWith(RESOURCES_PREFIX)) {
+                    addResource(childName, child.length());
+                } else if (isPomProperties(childName)) {
+                    addPomProperties(childName, new FileInputStream(child));
+                }
+            }
+        }
+
+        private void addResource(String name, long size) {
+            // The name looks like META-INF/resources/webjars/<library>/<version>/<resource>
+            String path = name.substring(RESOURCES_PREFIX.length());
+            int librarySlash = path.indexOf('/');
+            int versionSlash = (librarySlash != -1) ? path.indexOf('/', librarySlash + 1) : -1;
+            if (librarySlash <= 0 || versionSlash == -1 || versionSlash == path.length() - 1) {
+                return;
+            }
+
+            String library = path.substring(0, librarySlash);
+            String version = path.substring(librarySlash + 1, versionSlash);
+            String resource = path.substring(versionSlash + 1);
+
+            Map<String, Map<String, Long>> byVersion = resources.get(library);
+            if (byVersion == null) {
+                byVersion = Maps.newHashMap();
+                resources.put(library, byVersion);
+            }
+
+            Map<String, Long> versionResources = byVersion.get(version);
+            if (versionResources == null) {
+                versionResources = Maps.newHashMap();
+                byVersion.put(version, versionResources);
+            }
+
+            // Earlier classpath entries win, just like they do when asking the classloader
+            if (!versionResources.containsKey(resource)) {
+                versionResources.put(resource, size);
+            }
+        }
+
+        private static boolean isPomProperties(String name) {
+            // The name looks like META-INF/maven/<group>/<library>/pom.properties
+            if (!name.startsWith(MAVEN_PREFIX) || !name.endsWith('/' + POM_PROPERTIES)) {
+                return false;
+            }
+
+            String path = name.substring(MAVEN_PREFIX.length(), name.length() - POM_PROPERTIES.length() - 1);
+            int slash = path.indexOf('/');
+            return slash > 0 && slash < path.length() - 1 && path.indexOf('/', slash + 1) == -1;
+        }
+
+        private void addPomProperties(String name, InputStream stream) throws IOException {
+            String path = name.substring(MAVEN_PREFIX.length());
+            String group = path.substring(0, path.indexOf('/'));
+            String library = path.substring(path.indexOf('/') + 1, path.lastIndexOf('/'));
+
+            Properties props = new Properties();
+            Closer closer = Closer.create();
+            try {
+                props.load(closer.register(stream));
+            } catch (Throwable t) {
+                throw closer.rethrow(t, IOException.class);
+            } finally {
+                closer.close();
+            }
+
+            String version = props.getProperty("version");
+            if (version == null) {
+                return;
+            }
+
+            Map<String, Set<String>> libraries = groupVersions.get(group);
+            if (libraries == null) {
+                libraries = Maps.newHashMap();
+                groupVersions.put(group, libraries);
+            }
+
+            // Earlier classpath entries win, just like they do when asking the classloader
+            Set<String> libraryVersions = libraries.get(library);
+            if (libraryVersions == null) {
+                libraryVersions = Sets.newLinkedHashSet();
+                libraries.put(library, libraryVersions);
+            }
+            libraryVersions.add(version);
+        }
+
+        WebJarIndex toIndex(Iterable<String> groups) {
+            // Earlier groups take precedence over later ones, the same way VersionLoader searches them
+            List<String> reversed = Lists.reverse(ImmutableList.copyOf(groups));
+            Map<String, String> versions = Maps.newHashMap();
+            for (String group : reversed) {
+                Map<String, Set<String>> libraries = groupVersions.get(group);
+                if (libraries != null) {
+                    for (Map.Entry<String, Set<String>> entry : libraries.entrySet()) {
+                        versions.put(entry.getKey(), entry.getValue().iterator().next());
+                    }
+                }
+            }
+
+            // Every other version is available too, in the same order of precedence
+            Map<String, ImmutableSet.Builder<String>> allVersions = Maps.newHashMap();
+            for (Map.Entry<String, String> entry : versions.entrySet()) {
+                allVersions.put(entry.getKey(), ImmutableSet.<String>builder().add(entry.getValue()));
+            }
+            for (String group : groups) {
+                Map<String, Set<String>> libraries = groupVersions.get(group);
+                if (libraries != null) {
+                    for (Map.Entry<String, Set<String>> entry : libraries.entrySet()) {
+                        allVersions.get(entry.getKey()).addAll(entry.getValue());
+                    }
+                }
+            }
+
+            ImmutableMap.Builder<String, Set<String>> builtVersions = ImmutableMap.builder();
+            for (Map.Entry<String, ImmutableSet.Builder<String>> entry : allVersions.entrySet()) {
+                builtVersions.put(entry.getKey(), entry.getValue().build());
+            }
+
+            return new WebJarIndex(ImmutableMap.copyOf(versions), builtVersions.build(), resources);
+        }
+    }
+
+    /** Where a resource of a library is located and how big it is. */
+    private static class IndexedResource {
+        final String version;
+        final long size;
+
+        IndexedResource(String version, long size) {
+            this.version = version;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * The metrics reported by a {@link WebJarServlet}: request timers split by response status, the number of bytes
+ * served, per-library request counts and statistics for each of its caches.
+ */
+class WebJarMetrics {
+    /** The name of the counter shared by libraries once the per-library limit has been reached. */
+    static final String OTHER_LIBRARIES = "other";
+
+    private final MetricRegistry registry;
+    private final int maximumLibraries;
+
+    private final Timer ok;
+    private final Timer partialContent;
+    private final Timer redirect;
+    private final Timer notModified;
+    private final Timer notFound;
+    private final Timer error;
+    private final Timer other;
+    private final Meter bytesServed;
+
+    private final ConcurrentMap<String, Counter> libraries = Maps.newConcurrentMap();
+    private final Counter otherLibraries;
+
+    WebJarMetrics(MetricRegistry registry, int maximumLibraries) {
+        this.registry = registry;
+        this.maximumLibraries = maximumLibraries;
+
+        ok = registry.timer(name(WebJarServlet.class, "responses", "200"));
+        partialContent = registry.timer(name(WebJarServlet.class, "responses", "206"));
+        redirect = registry.timer(name(WebJarServlet.class, "responses", "302"));
+        notModified = registry.timer(name(WebJarServlet.class, "responses", "304"));
+        notFound = registry.timer(name(WebJarServlet.class, "responses", "404"));
+        error = registry.timer(name(WebJarServlet.class, "responses", "500"));
+        other = registry.timer(name(WebJarServlet.class, "responses", "other"));
+        bytesServed = registry.meter(name(WebJarServlet.class, "bytes-served"));
+        otherLibraries = registry.counter(name(WebJarServlet.class, "libraries", OTHER_LIBRARIES));
+    }
+
+    /** Register gauges that report the statistics of a cache.  The cache must have been built to record them. */
+    void registerCache(String cacheName, final Cache<?, ?> cache) {
+        registerCache(cacheName, new Supplier<CacheStats>() {
+            @Override
+            public CacheStats get() {
+                return cache.stats();
+            }
+        }, new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return cache.size();
+            }
+        });
+    }
+
+    /** Register gauges that report the statistics of an asset cache, and the total weight of the assets in it. */
+    void registerCache(String cacheName, final AssetCache cache) {
+        registerCache(cacheName, new Supplier<CacheStats>() {
+            @Override
+            public CacheStats get() {
+                return cache.stats();
+            }
+        }, new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return cache.size();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "weight"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.weight();
+            }
+        });
+    }
+
+    /**
+     * Register the gauges of an asset cache for each partition of a partitioned cache, named after the partition, along
+     * with how full the partitions that aren't pinned are.
+     */
+    void registerCachePartitions(PartitionedAssetCache cache, AssetCacheConfiguration configuration) {
+        for (Map.Entry<String, AssetCache> entry : cache.getPartitions().entrySet()) {
+            String cacheName = name("partitions", entry.getKey());
+            final AssetCache partition = entry.getValue();
+            registerCache(cacheName, partition);
+
+            final AssetCachePartitionConfiguration partitionConfiguration =
+                    configuration.getPartitions().get(entry.getKey());
+            if (!partitionConfiguration.isPinned()) {
+                register(name(WebJarServlet.class, "caches", cacheName, "occupancy"), new Gauge<Double>() {
+                    @Override
+                    public Double getValue() {
+                        // The share of the partition's maximum weight that its assets take up
+                        long maximumWeight = partitionConfiguration.getMaximumWeight();
+                        return (maximumWeight > 0) ? partition.weight() / (double) maximumWeight : 0;
+                    }
+                });
+            }
+        }
+    }
+
+    private void registerCache(String cacheName, final Supplier<CacheStats> stats, final Supplier<Long> size) {
+        register(name(WebJarServlet.class, "caches", cacheName, "hits"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return stats.get().hitCount();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "misses"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return stats.get().missCount();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "hit-rate"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return stats.get().hitRate();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "evictions"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return stats.get().evictionCount();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "load-time"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                // The average time spent loading an entry, in milliseconds
+                return stats.get().averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        });
+        register(name(WebJarServlet.class, "caches", cacheName, "size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return size.get();
+            }
+        });
+    }
+
+    /** Register a gauge for the number of libraries whose versions have been resolved. */
+    void registerVersionRegistry(final VersionRegistry versions) {
+        register(name(WebJarServlet.class, "versions", "libraries"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return versions.size();
+            }
+        });
+    }
+
+    /** Register gauges for the hits and misses of the cache of assets on disk. */
+    void registerDiskCache(final DiskCache diskCache) {
+        register(name(WebJarServlet.class, "caches", "disk", "hits"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return diskCache.getHitCount();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", "disk", "misses"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return diskCache.getMissCount();
+            }
+        });
+    }
+
+    /** Register gauges for the number of distinct asset buffers, and how many assets and bytes share them. */
+    void registerContentStore(final ContentStore contents) {
+        register(name(WebJarServlet.class, "caches", "contents", "size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return contents.size();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", "contents", "shared"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return contents.getSharedCount();
+            }
+        });
+        register(name(WebJarServlet.class, "caches", "contents", "shared-bytes"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return contents.getSharedBytes();
+            }
+        });
+    }
+
+    /** Register gauges that report how loads of assets that weren't cached went. */
+    void registerLoadScheduler(final LoadScheduler scheduler) {
+        register(name(WebJarServlet.class, "loads", "in-progress"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return scheduler.getLoadCount();
+            }
+        });
+        register(name(WebJarServlet.class, "loads", "coalesced"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return scheduler.getCoalescedCount();
+            }
+        });
+        register(name(WebJarServlet.class, "loads", "rejected"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return scheduler.getRejectedCount();
+            }
+        });
+        register(name(WebJarServlet.class, "loads", "timeouts"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return scheduler.getTimeoutCount();
+            }
+        });
+    }
+
+    /**
+     * Register gauges for the cache of missing libraries and assets, along with the bounds it was configured with and
+     * the false positive rate of its Bloom filter if it has one.
+     */
+    void registerNegativeCache(NegativeCache negativeCache, WebJarConfiguration configuration) {
+        registerCache("missing", negativeCache.getCache());
+
+        final long maximumSize = configuration.getNegativeCacheMaximumSize();
+        register(name(WebJarServlet.class, "caches", "missing", "maximum-size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return maximumSize;
+            }
+        });
+
+        final long ttl = configuration.getNegativeCacheTtl().toSeconds();
+        register(name(WebJarServlet.class, "caches", "missing", "ttl"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return ttl;
+            }
+        });
+
+        final BloomFilter<?> filter = negativeCache.getFilter();
+        if (filter != null) {
+            register(name(WebJarServlet.class, "bloom-filter", "expected-fpp"), new Gauge<Double>() {
+                @Override
+                public Double getValue() {
+                    return filter.expectedFpp();
+                }
+            });
+        }
+    }
+
+    /** Record how long it took to produce a response with a particular status. */
+    void recordResponse(int status, long nanos) {
+        timer(status).update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void markBytesServed(long bytes) {
+        bytesServed.mark(bytes);
+    }
+
+    /**
+     * Count a request for an asset of a library.  Only libraries that actually exist are counted, and once the limit
+     * on the number of libraries is reached any new ones share a single counter.
+     */
+    void markLibrary(String library) {
+        Counter counter = libraries.get(library);
+        if (counter == null) {
+            counter = (libraries.size() < maximumLibraries) ? addLibrary(library) : otherLibraries;
+        }
+
+        counter.inc();
+    }
+
+    private Counter addLibrary(String library) {
+        Counter counter = registry.counter(name(WebJarServlet.class, "libraries", library));
+        Counter existing = libraries.putIfAbsent(library, counter);
+        return (existing != null) ? existing : counter;
+    }
+
+    private Timer timer(int status) {
+        switch (status) {
+            case HttpServletResponse.SC_OK:
+                return ok;
+            case HttpServletResponse.SC_PARTIAL_CONTENT:
+                return partialContent;
+            case HttpServletResponse.SC_FOUND:
+                return redirect;
+            case HttpServletResponse.SC_NOT_MODIFIED:
+                return notModified;
+            case HttpServletResponse.SC_NOT_FOUND:
+                return notFound;
+            case HttpServletResponse.SC_INTERNAL_SERVER_ERROR:
+                return error;
+            default:
+                return other;
+        }
+    }
+
+    /**
+     * Register a gauge, replacing any gauge of the same name.  Every servlet's gauges have the same names, so when more
+     * than one servlet reports to the same registry the gauges of the one created last are the ones reported, rather
+     * than the second servlet failing to start.
+     */
+    private void register(String name, Gauge<?> gauge) {
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+}
@@ -1,24 +1,47 @@
 package com.bazaarvoice.dropwizard.webjars;
 
-import com.google.common.base.Splitter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheLoader;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.ws.rs.core.EntityTag;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A servlet that will load resources from WebJars found in the classpath.  In order to make it more convenient to
@@ -31,127 +54,888 @@ public class WebJarServlet extends HttpServlet {
     /** The URL prefix that webjars are served out of. */
     public static final String URL_PREFIX = "/webjars/";
 
+    /** The path that combinations of assets are served at, when they're enabled. */
+    public static final String COMBO_PATH = "/webjars-combo";
+
     /** The default maven group(s) that WebJars are searched for in. */
     public static final String[] DEFAULT_MAVEN_GROUPS = { "org.webjars" };
 
-    /** A path parser that can determine what library and library resource a particular path is for. */
-    private static final Pattern PATH_PARSER = Pattern.compile(URL_PREFIX + "([^/]+)/(.+)");
+    /** The servlet path of requests when the servlet is mapped to {@link #URL_PREFIX}, the way the bundle maps it. */
+    private static final String SERVLET_PATH = URL_PREFIX.substring(0, URL_PREFIX.length() - 1);
+
+    /** The path the manifest is served at.  It can't be confused with an asset, which always has a library. */
+    private static final String MANIFEST_PATH = URL_PREFIX + AssetManifest.NAME;
+
+    /** The parameter that limits the manifest to a single library. */
+    private static final String LIBRARY_PARAMETER = "library";
+
+    /** The size of the chunks that assets are copied in when the container can't write a buffer directly. */
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /** The Cache-Control header for versioned URLs, whose content never changes. */
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String GZIP = "gzip";
+    private static final String SOURCE_MAP = "SourceMap";
+    private static final String BYTES = "bytes";
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+    private static final String MULTIPART_BOUNDARY_PREFIX = "webjars-";
+    static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private static final ThreadLocal<byte[]> COPY_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[COPY_BUFFER_SIZE];
+        }
+    };
 
-    /** An If-None-Match header parser, splits the header into the multiple ETags that might be present. */
-    private static final Splitter IF_NONE_MATCH_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+    /** The status returned while an asynchronous request is still being handled. */
+    private static final int PENDING = 0;
 
     private static final Logger LOG = LoggerFactory.getLogger(WebJarServlet.class);
 
-    private final transient LoadingCache<AssetId, Asset> cache;
+    private final transient AssetCache cache;
+    private final transient AssetLoader loader;
+    private final transient WebJarIndex index;
+    private final transient NegativeCache negativeCache;
+    private final transient Iterable<String> groups;
+    private final transient WebJarMetrics metrics;
+    private final transient ConcurrentMap<String, AssetPath> paths = Maps.newConcurrentMap();
+    private final transient ExecutorService loaderExecutor;
+    private final transient LoadScheduler scheduler;
+    private final transient AssetManifest manifest;
+    private final transient PreloadLinks preloadLinks;
+    private final transient AssetCombiner combiner;
+    private final boolean async;
+    private final long asyncTimeout;
+    private final boolean redirectToVersionedUrls;
+    private final String redirectCacheControl;
 
-    @SuppressWarnings("unchecked")
     public WebJarServlet(CacheBuilder builder, Iterable<String> groups) {
-        if (builder == null) {
-            builder = CacheBuilder.newBuilder()
-                    .maximumWeight(5 * 1024 * 1024)
-                    .expireAfterAccess(5, TimeUnit.MINUTES);
-        }
+        this(builder, groups, null);
+    }
+
+    public WebJarServlet(CacheBuilder builder, Iterable<String> groups, WebJarConfiguration configuration) {
+        this(builder, groups, configuration, null);
+    }
 
+    /**
+     * Create a servlet.  Assets are cached in the cache described by the configuration, unless a Guava
+     * {@link CacheBuilder} is given in which case they're cached in a Guava cache built by it.
+     */
+    public WebJarServlet(CacheBuilder builder, Iterable<String> groups, WebJarConfiguration configuration,
+                         MetricRegistry registry) {
         if (groups == null || Iterables.isEmpty(groups)) {
             groups = ImmutableList.copyOf(DEFAULT_MAVEN_GROUPS);
         }
 
-        AssetLoader loader = new AssetLoader(new VersionLoader(groups));
-        cache = builder.weigher(new AssetWeigher()).build(loader);
+        if (configuration == null) {
+            configuration = new WebJarConfiguration();
+        }
+
+        this.groups = groups;
+        index = configuration.isClasspathIndex() ? buildIndex(groups) : null;
+
+        loader = new AssetLoader(new VersionLoader(groups), index,
+                configuration.isPackedAssets() ? AssetPack.load(groups, configuration) : null, configuration);
+        async = configuration.isAsync();
+        asyncTimeout = configuration.getAsyncTimeout().toMilliseconds();
+        loaderExecutor = (async || configuration.isBoundedLoading()) ? createLoaderExecutor(configuration) : null;
+
+        // Refreshed assets are reloaded on the loader executor, so requests are served the stale asset in the meantime
+        CacheLoader<AssetId, Asset> cacheLoader = (loaderExecutor != null)
+                ? CacheLoader.asyncReloading(loader, loaderExecutor)
+                : loader;
+        cache = (builder != null)
+                ? new GuavaAssetCache(toObjectBuilder(builder), configuration.getCache().getWeigher(), cacheLoader)
+                : configuration.getCache().build(cacheLoader);
+        scheduler = (loaderExecutor != null)
+                ? new LoadScheduler(cache, loader, loaderExecutor, configuration.getLoadTimeout().toMilliseconds())
+                : null;
+        negativeCache = new NegativeCache(configuration, (configuration.isBloomFilter() && index == null)
+                ? NegativeCache.buildFilter(buildIndex(groups))
+                : null);
+
+        metrics = new WebJarMetrics(Objects.firstNonNull(registry, new MetricRegistry()),
+                configuration.getMaximumLibraryMetrics());
+        metrics.registerCache("assets", cache);
+        if (cache instanceof PartitionedAssetCache) {
+            metrics.registerCachePartitions((PartitionedAssetCache) cache, configuration.getCache());
+        }
+        metrics.registerVersionRegistry(loader.getVersionRegistry());
+        metrics.registerNegativeCache(negativeCache, configuration);
+        if (loader.getDiskCache() != null) {
+            metrics.registerDiskCache(loader.getDiskCache());
+        }
+        if (loader.getContentStore() != null) {
+            metrics.registerContentStore(loader.getContentStore());
+        }
+        if (scheduler != null) {
+            metrics.registerLoadScheduler(scheduler);
+        }
+
+        redirectToVersionedUrls = configuration.isRedirectToVersionedUrls();
+        redirectCacheControl = "public, max-age=" + configuration.getRedirectMaxAge().toSeconds();
+
+        // Features that need the index build it the first time they use it when the servlet wasn't configured with one
+        Supplier<WebJarIndex> indexSupplier = Suppliers.memoize(new Supplier<WebJarIndex>() {
+            @Override
+            public WebJarIndex get() {
+                return getIndex();
+            }
+        });
+        manifest = configuration.isManifest() ? new AssetManifest(indexSupplier, cache, loader) : null;
+        preloadLinks = configuration.isPreloadLinks()
+                ? new PreloadLinks(new DependencyGraph(groups), indexSupplier, configuration.getPreloadEntryPoints())
+                : null;
+
+        combiner = configuration.isCombo() ? new AssetCombiner(cache, loader, new Function<String, AssetId>() {
+            @Override
+            public AssetId apply(String path) {
+                return resolve(path);
+            }
+        }, configuration) : null;
+        if (combiner != null) {
+            metrics.registerCache("combinations", combiner.getCache());
+        }
+    }
+
+    /**
+     * The public constructors take a raw {@link CacheBuilder}, as they always have.  Every builder starts out as a
+     * {@code CacheBuilder<Object, Object>} and one that hasn't been built yet can't have been narrowed since.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static CacheBuilder<Object, Object> toObjectBuilder(CacheBuilder builder) {
+        return builder;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (async && req.isAsyncSupported()) {
+            new AsyncExchange(req, resp).run();
+            return;
+        }
+
+        long start = System.nanoTime();
+        int status = serve(req, resp, null);
+        metrics.recordResponse(status, System.nanoTime() - start);
+    }
+
+    @Override
+    public void destroy() {
+        if (loaderExecutor != null) {
+            loaderExecutor.shutdownNow();
+            scheduler.shutdown();
+        }
+
+        super.destroy();
+    }
+
+    /** Handle a request, turning any failure into a 500 response. */
+    private int serve(HttpServletRequest req, HttpServletResponse resp, AsyncExchange exchange) throws IOException {
         try {
-            handle(req, resp);
+            return handle(req, resp, exchange);
         } catch (Exception e) {
             LOG.info("Error processing request: {}", req, e);
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
         }
     }
 
-    private void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        String path = getFullPath(req);
+    /**
+     * Handle a request, returning the status code of the response.  When the request is being handled asynchronously
+     * {@link #PENDING} is returned if the response is going to be finished later, either because the asset has to be
+     * loaded first or because it's still being written.
+     */
+    private int handle(HttpServletRequest req, HttpServletResponse resp, AsyncExchange exchange) throws IOException {
+        // Requests for assets that have been served before don't need their path parsed again
+        String pathKey = getPathKey(req);
+        AssetPath path = (pathKey != null) ? paths.get(pathKey) : null;
+        boolean known = (path != null);
+        if (!known) {
+            String fullPath = getFullPath(req);
+            if (manifest != null && MANIFEST_PATH.equals(fullPath)) {
+                return sendManifest(req, resp, exchange);
+            }
+
+            if (combiner != null && COMBO_PATH.equals(fullPath)) {
+                return sendCombination(req, resp, exchange);
+            }
+
+            path = parsePath(fullPath);
+            if (path == null) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return HttpServletResponse.SC_NOT_FOUND;
+            }
+        }
 
-        // Check to see if this is a valid path that we know how to deal with, if so parse out the library and resource
-        Matcher m = PATH_PARSER.matcher(path);
-        if (!m.matches()) {
+        String library = path.id.library;
+        String resource = path.id.resource;
+        String version = path.version;
+
+        // If we have an index make sure that the request is for something that actually exists before bothering with
+        // the cache
+        if (!known && index != null && !isIndexed(path.id)) {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+
+        // Try to load the asset.  When loads are bounded assets that aren't cached are loaded by the loader executor,
+        // and asynchronous requests are handled again once their asset has been loaded instead of waiting for it.
+        Asset asset;
+        if (exchange != null && exchange.loaded != null) {
+            asset = exchange.loaded;
+        } else if (scheduler != null) {
+            asset = cache.getIfPresent(path.id);
+            if (asset == null) {
+                if (exchange != null) {
+                    return exchange.load(path.id);
+                }
+
+                try {
+                    asset = scheduler.get(path.id);
+                } catch (TimeoutException e) {
+                    return sendUnavailable(resp);
+                } catch (RejectedExecutionException e) {
+                    return sendUnavailable(resp);
+                }
+            }
+        } else if (loader.isBulkLoadable(path.id)) {
+            asset = cache.getAll(Collections.singleton(path.id)).get(path.id);
+        } else {
+            asset = cache.getUnchecked(path.id);
         }
 
-        // The path is valid, try to load the asset
-        AssetId id = new AssetId(m.group(1), m.group(2));
-        Asset asset = cache.getUnchecked(id);
         if (asset == AssetLoader.NOT_FOUND) {
+            // Remember that the asset doesn't exist somewhere that can't push real assets out of the cache
+            cache.invalidate(path.id);
+            negativeCache.add(path.id);
+
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+
+        metrics.markLibrary(library);
+
+        if (version != null) {
+            // The version requested has to be the one that's present, otherwise we'd be caching the wrong content
+            // forever.  Explicitly requested versions are always loaded from that version's own files.
+            if (path.id.version == null && !version.equals(asset.version)
+                    && !version.equals(loader.getVersion(library))) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return HttpServletResponse.SC_NOT_FOUND;
+            }
+
+            resp.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+        } else if (redirectToVersionedUrls) {
+            resp.setHeader(HttpHeaders.CACHE_CONTROL, redirectCacheControl);
+            resp.sendRedirect(req.getContextPath() + URL_PREFIX + library + '/' + asset.version + '/' + resource);
+            return HttpServletResponse.SC_FOUND;
+        }
+
+        // The path refers to an asset that exists, so it's safe to remember it without letting arbitrary requests grow
+        // the map
+        if (!known && pathKey != null) {
+            paths.putIfAbsent(pathKey, path);
+        }
+
+        return sendAsset(req, resp, exchange, asset, path);
+    }
+
+    /**
+     * Send an asset that has been found, or a 304 if the client's copy is up to date.  The path is the one the asset
+     * was asked for with, or {@code null} for an asset that doesn't have one of its own such as a combination.
+     */
+    private int sendAsset(HttpServletRequest req, HttpServletResponse resp, AsyncExchange exchange, Asset asset,
+                          AssetPath path) throws IOException {
+        // Decide whether the compressed or uncompressed form of the asset is going to be sent back.  If the asset has
+        // a compressed form then the response depends on the client's Accept-Encoding header.
+        boolean gzip = false;
+        if (asset.gzipBytes != null) {
+            resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            gzip = HeaderScanner.acceptsGzip(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
         }
 
         // We know we've found the asset.  No matter what happens, make sure we send back its last modification time
-        // as well as its ETag
-        resp.setDateHeader(HttpHeaders.LAST_MODIFIED, asset.lastModifiedTime);
-        resp.setHeader(HttpHeaders.ETAG, hash2etag(asset.hash));
+        // as well as its ETag.  Each encoding of the asset has its own ETag.
+        resp.setHeader(HttpHeaders.LAST_MODIFIED, asset.lastModified);
+        resp.setHeader(HttpHeaders.ETAG, gzip ? asset.gzipETag : asset.eTag);
 
-        // Check the If-None-Match header to see if any ETags match this resource
+        // Check the If-None-Match header to see if any ETags match the encoding of this resource being sent
         String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
-        if (ifNoneMatch != null) {
-            for (String eTag : IF_NONE_MATCH_SPLITTER.split(ifNoneMatch)) {
-                if ("*".equals(eTag) || asset.hash.equals(etag2hash(eTag))) {
-                    resp.sendError(HttpServletResponse.SC_NOT_MODIFIED);
-                    return;
-                }
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, asset, gzip)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        // Check the If-Modified-Since header to see if this resource is newer.  Clients almost always send back
+        // exactly the Last-Modified value they were given, so only parse the date when they didn't.
+        String ifModifiedSince = req.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && (ifModifiedSince.equals(asset.lastModified)
+                || asset.lastModifiedTime <= req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        if (asset.sourceMap != null) {
+            resp.setHeader(SOURCE_MAP, asset.sourceMap);
+        }
+
+        if (preloadLinks != null && path != null) {
+            String links = preloadLinks.get(path.id, path.version != null, req.getContextPath());
+            if (links != null) {
+                resp.setHeader(HttpHeaders.LINK, links);
             }
         }
 
-        // Check the If-Modified-Since header to see if this resource is newer
-        if (asset.lastModifiedTime <= req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE)) {
-            resp.sendError(HttpServletResponse.SC_NOT_MODIFIED);
-            return;
+        ByteBuffer body = asset.bytes;
+        if (gzip) {
+            resp.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            body = asset.gzipBytes;
+        }
+
+        // Clients may ask for only part of the asset, ranges always refer to the bytes of the encoding being sent
+        resp.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        List<ByteRange> ranges = getRanges(req, asset, gzip, body.remaining());
+        if (ranges != null && ranges.isEmpty()) {
+            resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + body.remaining());
+            resp.setContentLength(0);
+            resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+        }
+
+        if (ranges != null && ranges.size() > 1) {
+            return sendMultipleRanges(resp, asset, body, ranges);
         }
 
         // Send back the correct content type and character encoding headers
-        resp.setContentType(asset.mediaType.toString());
-        if (asset.mediaType.charset().isPresent()) {
-            resp.setCharacterEncoding(asset.mediaType.charset().get().toString());
+        resp.setContentType(asset.contentType);
+        if (asset.characterEncoding != null) {
+            resp.setCharacterEncoding(asset.characterEncoding);
+        }
+
+        int status = HttpServletResponse.SC_OK;
+        if (ranges != null) {
+            ByteRange range = ranges.get(0);
+            resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            resp.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(body.remaining()));
+            body = slice(body, range);
+            status = HttpServletResponse.SC_PARTIAL_CONTENT;
         }
 
         // Finally write the bytes of the asset out
+        resp.setContentLength(body.remaining());
         ServletOutputStream output = resp.getOutputStream();
+        if (exchange != null && output instanceof HttpOutput) {
+            // Jetty writes the buffer without blocking, a slow client doesn't hold on to a thread while it reads
+            metrics.markBytesServed(body.remaining());
+            return exchange.send((HttpOutput) output, body.duplicate(), status);
+        }
+
         try {
-            output.write(asset.bytes);
+            write(output, body.duplicate());
         } finally {
             output.close();
         }
+
+        metrics.markBytesServed(body.remaining());
+        return status;
     }
 
-    private static String getFullPath(HttpServletRequest request) {
-        StringBuilder sb = new StringBuilder(request.getServletPath());
-        if (request.getPathInfo() != null) {
-            sb.append(request.getPathInfo());
+    /**
+     * Determine which ranges of the asset the client asked for.  Returns {@code null} if the whole asset should be
+     * sent, either because no ranges were asked for, the Range header couldn't be understood, or the If-Range header
+     * says the client's copy of the asset is out of date.  Returns an empty list if none of the ranges can be
+     * satisfied.
+     */
+    private static List<ByteRange> getRanges(HttpServletRequest req, Asset asset, boolean gzip, int length) {
+        String range = req.getHeader(HttpHeaders.RANGE);
+        if (range == null) {
+            return null;
+        }
+
+        // If-Range has to match exactly, a weak ETag or a different encoding's ETag means the whole asset is needed
+        String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean current;
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                current = ifRange.equals(gzip ? asset.gzipETag : asset.eTag);
+            } else {
+                current = ifRange.equals(asset.lastModified)
+                        || getDateHeader(req, HttpHeaders.IF_RANGE) == asset.lastModifiedTime;
+            }
+
+            if (!current) {
+                return null;
+            }
         }
 
-        return sb.toString();
+        return ByteRange.parse(range, length);
     }
 
-    private static String hash2etag(String hash) {
-        return new EntityTag(hash).toString();
+    /**
+     * Send the manifest of every library, or of the library named by the request's parameter.  Building the manifest
+     * loads assets, so asynchronous requests wait for it to be built on the loader executor.
+     */
+    private int sendManifest(HttpServletRequest req, HttpServletResponse resp, AsyncExchange exchange)
+            throws IOException {
+        String library = req.getParameter(LIBRARY_PARAMETER);
+        if (exchange != null && !exchange.loading && !manifest.isBuilt(library)) {
+            return exchange.load();
+        }
+
+        Asset json = (library != null) ? manifest.get(library) : manifest.get();
+        if (json == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+
+        resp.setHeader(HttpHeaders.ETAG, json.eTag);
+        String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, json, false)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        resp.setContentType(json.contentType);
+        resp.setCharacterEncoding(json.characterEncoding);
+        resp.setContentLength(json.bytes.remaining());
+
+        ServletOutputStream output = resp.getOutputStream();
+        try {
+            write(output, json.bytes.duplicate());
+        } finally {
+            output.close();
+        }
+
+        metrics.markBytesServed(json.bytes.remaining());
+        return HttpServletResponse.SC_OK;
     }
 
-    private static String etag2hash(String etag) {
-        String hash;
+    /**
+     * Send the combination of the assets listed in the request's query string.  Putting a combination together loads
+     * assets, so asynchronous requests wait for it on the loader executor.
+     */
+    private int sendCombination(HttpServletRequest req, HttpServletResponse resp, AsyncExchange exchange)
+            throws IOException {
+        String query = req.getQueryString();
+        if (query == null) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+
+        if (exchange != null && !exchange.loading && !combiner.isCombined(query)) {
+            return exchange.load();
+        }
+
+        Asset combination = combiner.get(query);
+        if (combination == AssetLoader.NOT_FOUND) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+
+        if (combination == AssetCombiner.INVALID) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+
+        return sendAsset(req, resp, exchange, combination, null);
+    }
+
+    /** Send several ranges of an asset as a multipart/byteranges response. */
+    private int sendMultipleRanges(HttpServletResponse resp, Asset asset, ByteBuffer body, List<ByteRange> ranges)
+            throws IOException {
+        // The boundary can't appear anywhere in the asset, which is as good as guaranteed for its own hash
+        String boundary = MULTIPART_BOUNDARY_PREFIX + asset.hash;
+
+        List<byte[]> headers = Lists.newArrayListWithCapacity(ranges.size());
+        long length = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + asset.contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(body.remaining()) + "\r\n"
+                    + "\r\n").getBytes(Charsets.ISO_8859_1);
+            headers.add(header);
+            length += header.length + range.length();
+        }
+
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(Charsets.ISO_8859_1);
+        length += trailer.length;
 
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        resp.setContentType(MULTIPART_BYTERANGES + boundary);
+        resp.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(length));
+
+        long bytes = 0;
+        ServletOutputStream output = resp.getOutputStream();
         try {
-            hash = EntityTag.valueOf(etag).getValue();
-        } catch (Exception e) {
+            for (int i = 0; i < ranges.size(); i++) {
+                output.write(headers.get(i));
+                copy(output, slice(body, ranges.get(i)));
+                bytes += ranges.get(i).length();
+            }
+            output.write(trailer);
+        } finally {
+            output.close();
+        }
+
+        metrics.markBytesServed(bytes);
+        return HttpServletResponse.SC_PARTIAL_CONTENT;
+    }
+
+    private static ByteBuffer slice(ByteBuffer body, ByteRange range) {
+        ByteBuffer slice = body.duplicate();
+        slice.position(slice.position() + range.first);
+        slice.limit(slice.position() + range.length());
+        return slice;
+    }
+
+    /** Returns the value of a date header, or -1 if it is missing or isn't a date. */
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static void write(ServletOutputStream output, ByteBuffer body) throws IOException {
+        if (output instanceof HttpOutput) {
+            // Jetty is able to write the buffer directly without copying it into the response buffer first
+            ((HttpOutput) output).sendContent(body);
+        } else {
+            copy(output, body);
+        }
+    }
+
+    private static void copy(ServletOutputStream output, ByteBuffer body) throws IOException {
+        // The buffers are read-only so their arrays aren't accessible, copy through a buffer that's reused instead
+        byte[] buffer = COPY_BUFFER.get();
+        while (body.hasRemaining()) {
+            int length = Math.min(body.remaining(), buffer.length);
+            body.get(buffer, 0, length);
+            output.write(buffer, 0, length);
+        }
+    }
+
+    /** Turn a request away because its asset couldn't be loaded in time, or there are too many loads already. */
+    private static int sendUnavailable(HttpServletResponse resp) throws IOException {
+        resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Determine whether an If-None-Match header matches the ETag of the encoding of an asset that's being sent, so
+     * that a client can't revalidate one encoding with the other's ETag.  An asset that we don't compress ourselves
+     * may still be compressed by Jetty, which adds our -gzip suffix to the ETag, so for those assets the suffixed ETag
+     * matches as well.
+     */
+    private static boolean matchesETag(String ifNoneMatch, Asset asset, boolean gzip) {
+        if (asset.gzipBytes == null) {
+            return HeaderScanner.matchesETag(ifNoneMatch, asset.hash, "")
+                    || HeaderScanner.matchesETag(ifNoneMatch, asset.hash, GZIP_ETAG_SUFFIX);
+        }
+
+        return HeaderScanner.matchesETag(ifNoneMatch, asset.hash, gzip ? GZIP_ETAG_SUFFIX : "");
+    }
+
+    private boolean isIndexed(AssetId id) {
+        return (id.version != null)
+                ? index.getResourceVersion(id.library, id.version, id.resource) != null
+                : index.contains(id.library, id.resource);
+    }
+
+    private static ExecutorService createLoaderExecutor(WebJarConfiguration configuration) {
+        int threads = configuration.getLoaderThreads();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(configuration.getLoaderQueueSize()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("webjars-loader-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /** Returns the index of WebJars in the classpath, building one if this servlet wasn't configured to use one. */
+    WebJarIndex getIndex() {
+        return (index != null) ? index : buildIndex(groups);
+    }
+
+    /** Load an asset into the cache ahead of it being requested. */
+    void preload(String library, String resource) {
+        cache.getUnchecked(new AssetId(library, resource));
+    }
+
+    /**
+     * Determine whether the resource path of a request begins with the version of the library.  Any version that the
+     * library's files could be located under is accepted, from the most specific version to the one with all -suffixes
+     * removed.  Returns the version in the path or {@code null} if the path isn't versioned.
+     */
+    private static String getRequestedVersion(String version, String resource) {
+        do {
+            if (resource.startsWith(version) && resource.length() > version.length() + 1
+                    && resource.charAt(version.length()) == '/') {
+                return version;
+            }
+
+            int hyphen = version.lastIndexOf('-');
+            if (hyphen == -1) {
+                return null;
+            }
+
+            version = version.substring(0, hyphen);
+        }
+        while (true);
+    }
+
+    private static WebJarIndex buildIndex(Iterable<String> groups) {
+        ClassLoader classLoader = Objects.firstNonNull(
+                Thread.currentThread().getContextClassLoader(),
+                WebJarServlet.class.getClassLoader());
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            WebJarIndex index = WebJarIndex.build(classLoader, groups);
+            LOG.info("Indexed {} WebJar libraries in {}", index.getLibraries().size(), stopwatch);
+            return index;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Returns the key that a request's path is remembered under once it's known to refer to an asset, or {@code null}
+     * if the servlet isn't mapped the usual way and the path has to be parsed every time.  The path info of a request
+     * is a string that the container has already created, so looking it up doesn't allocate anything.
+     */
+    private static String getPathKey(HttpServletRequest req) {
+        return SERVLET_PATH.equals(req.getServletPath()) ? req.getPathInfo() : null;
+    }
+
+    private static String getFullPath(HttpServletRequest req) {
+        String path = req.getServletPath();
+        if (req.getPathInfo() != null) {
+            path = path + req.getPathInfo();
+        }
+
+        return path;
+    }
+
+    /**
+     * Resolve the path of an asset in a combination, relative to {@link #URL_PREFIX}, exactly the way a request for the
+     * asset on its own would be.  Returns {@code null} if the path can't refer to an asset.
+     */
+    private AssetId resolve(String path) {
+        AssetPath assetPath = parsePath(URL_PREFIX + path);
+        return (assetPath != null && (index == null || isIndexed(assetPath.id))) ? assetPath.id : null;
+    }
+
+    /**
+     * Check to see if this is a valid path that we know how to deal with, if so parse out the library and resource.
+     * The path may optionally include the version of the library as the first part of the resource path, in which
+     * case the content can never change.  Returns {@code null} if the path isn't one for a WebJar asset or it's for
+     * a library or asset that is known not to exist.
+     */
+    private AssetPath parsePath(String path) {
+        if (!path.startsWith(URL_PREFIX)) {
             return null;
         }
 
-        // Jetty insists on adding a -gzip suffix to ETags sometimes.  If it's there, then strip it off.
-        if (hash.endsWith("-gzip")) {
-            hash = hash.substring(0, hash.length() - 5);
+        int slash = path.indexOf('/', URL_PREFIX.length());
+        if (slash == URL_PREFIX.length() || slash == -1 || slash == path.length() - 1) {
+            return null;
         }
 
-        return hash;
+        String library = path.substring(URL_PREFIX.length(), slash);
+        if (negativeCache.isMissingLibrary(library)) {
+            return null;
+        }
+
+        String libraryVersion = loader.getVersion(library);
+        if (libraryVersion == null) {
+            negativeCache.addLibrary(library);
+            return null;
+        }
+
+        // Requests for the version that's served by default share their cache entries with unversioned requests, any
+        // other version present in the classpath has to be asked for explicitly
+        String resource = path.substring(slash + 1);
+        String version = getRequestedVersion(libraryVersion, resource);
+        String explicitVersion = null;
+        if (version == null) {
+            for (String otherVersion : loader.getVersions(library)) {
+                version = getRequestedVersion(otherVersion, resource);
+                if (version != null) {
+                    explicitVersion = version;
+                    break;
+                }
+            }
+        }
+
+        if (version != null) {
+            resource = resource.substring(version.length() + 1);
+        }
+
+        AssetId id = new AssetId(library, explicitVersion, resource);
+        return negativeCache.isMissing(id) ? null : new AssetPath(id, version);
+    }
+
+    /**
+     * A request that is being handled asynchronously.  The request thread is given back to the container as soon as
+     * the request needs to wait for anything: assets that aren't cached are loaded by the loader executor, and the
+     * bytes of an asset are written by Jetty without blocking while the client reads them.
+     */
+    private class AsyncExchange implements Runnable, Callback, AsyncListener {
+        private final HttpServletRequest req;
+        private final HttpServletResponse resp;
+        private final AsyncContext context;
+        private final long start = System.nanoTime();
+
+        /** Whether the exchange is running on the loader executor, where it's fine to load assets. */
+        private volatile boolean loading;
+
+        /** The asset that the exchange was waiting for, once it has been loaded. */
+        private volatile Asset loaded;
+
+        /** The status of the response that's being written. */
+        private volatile int status;
+
+        /** Whether the exchange has been closed out, either by finishing the response or by timing out. */
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        AsyncExchange(HttpServletRequest req, HttpServletResponse resp) {
+            this.req = req;
+            this.resp = resp;
+            this.context = req.startAsync();
+
+            // Otherwise the container's default timeout of 30 seconds can go off while a slow client is still reading
+            context.setTimeout(asyncTimeout);
+            context.addListener(this);
+        }
+
+        @Override
+        public void run() {
+            if (finished.get()) {
+                // The exchange timed out while its asset was being loaded
+                return;
+            }
+
+            int result;
+            try {
+                result = serve(req, resp, this);
+            } catch (IOException e) {
+                LOG.debug("Unable to send response: {}", req, e);
+                result = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            }
+
+            if (result != PENDING) {
+                finish(result);
+            }
+        }
+
+        /** Load the asset on the loader executor and then handle the request again. */
+        int load() throws IOException {
+            loading = true;
+            try {
+                loaderExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                return sendUnavailable(resp);
+            }
+
+            return PENDING;
+        }
+
+        /**
+         * Wait for an asset to be loaded without holding on to a thread, and then handle the request again.  The
+         * request gets a 503 if the asset takes too long to load or there are too many loads already.
+         */
+        int load(AssetId id) {
+            scheduler.get(id, new FutureCallback<Asset>() {
+                @Override
+                public void onSuccess(Asset asset) {
+                    loaded = asset;
+                    run();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    int result;
+                    try {
+                        if (t instanceof TimeoutException || t instanceof RejectedExecutionException) {
+                            result = sendUnavailable(resp);
+                        } else {
+                            LOG.info("Error processing request: {}", req, t);
+                            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                            result = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                        }
+                    } catch (IOException e) {
+                        LOG.debug("Unable to send response: {}", req, e);
+                        result = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                    }
+                    finish(result);
+                }
+            });
+
+            return PENDING;
+        }
+
+        /** Start writing the body of the response, the exchange finishes when Jetty says that it has been written. */
+        int send(HttpOutput output, ByteBuffer body, int status) {
+            this.status = status;
+            output.sendContent(body, this);
+            return PENDING;
+        }
+
+        @Override
+        public void succeeded() {
+            finish(status);
+        }
+
+        @Override
+        public void failed(Throwable t) {
+            // Almost always a client that went away before it received everything
+            LOG.debug("Unable to send response: {}", req, t);
+            finish(status);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            LOG.debug("Timed out handling request: {}", req);
+            finish(resp.isCommitted() ? status : sendUnavailable(resp));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            LOG.debug("Unable to send response: {}", req, event.getThrowable());
+            finish((status != 0) ? status : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void finish(int status) {
+            // A timeout can close out the exchange before whatever it was waiting for gets back to it
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+
+            metrics.recordResponse(status, System.nanoTime() - start);
+            context.complete();
+        }
+    }
+
+    /** A request path that has been parsed into the asset it refers to and the version it asked for, if any. */
+    private static class AssetPath {
+        final AssetId id;
+        final String version;
+
+        AssetPath(AssetId id, String version) {
+            this.id = id;
+            this.version = version;
+        }
     }
 }
@@ -0,0 +1,218 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.net.MediaType;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class AssetCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CacheLoader<AssetId, Asset> loader = new CacheLoader<AssetId, Asset>() {
+        @Override
+        public Asset load(AssetId id) throws Exception {
+            loads.incrementAndGet();
+            if (id.resource.equals("broken.txt")) {
+                throw new IllegalStateException("broken");
+            }
+
+            return new Asset(id.resource.getBytes(Charsets.UTF_8), MediaType.PLAIN_TEXT_UTF_8);
+        }
+
+        @Override
+        public Map<AssetId, Asset> loadAll(Iterable<? extends AssetId> ids) throws Exception {
+            // Every bulk load brings an extra asset along with it
+            Map<AssetId, Asset> assets = Maps.newHashMap();
+            for (AssetId id : ids) {
+                assets.put(id, load(id));
+            }
+            assets.put(id("extra.txt"), new Asset(new byte[5], MediaType.PLAIN_TEXT_UTF_8));
+            return assets;
+        }
+    };
+
+    @Test
+    public void testLoadsOnce() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            assertNull(cache.getIfPresent(id("hello.txt")));
+
+            Asset asset = cache.getUnchecked(id("hello.txt"));
+            assertSame(asset, cache.getUnchecked(id("hello.txt")));
+            assertSame(asset, cache.getIfPresent(id("hello.txt")));
+            assertEquals(1, cache.size());
+        }
+
+        assertEquals(AssetCacheType.values().length, loads.get());
+    }
+
+    @Test
+    public void testGetAll() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            Asset hello = cache.getUnchecked(id("hello.txt"));
+
+            Map<AssetId, Asset> assets = cache.getAll(ImmutableList.of(id("hello.txt"), id("goodbye.txt")));
+            assertEquals(ImmutableSet.of(id("hello.txt"), id("goodbye.txt")), assets.keySet());
+            assertSame(hello, assets.get(id("hello.txt")));
+            assertSame(assets.get(id("goodbye.txt")), cache.getIfPresent(id("goodbye.txt")));
+
+            // The extra asset the loader returned is cached too
+            assertNotNull(type.name(), cache.getIfPresent(id("extra.txt")));
+            assertEquals(type.name(), 3, cache.size());
+        }
+    }
+
+    @Test
+    public void testInvalidate() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            cache.getUnchecked(id("hello.txt"));
+            cache.invalidate(id("hello.txt"));
+
+            assertNull(cache.getIfPresent(id("hello.txt")));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testWeight() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            Asset hello = cache.getUnchecked(id("hello.txt"));
+            Asset goodbye = cache.getUnchecked(id("goodbye.txt"));
+
+            assertEquals(type.name(), AssetCacheWeigher.BYTES.weigh(hello) + AssetCacheWeigher.BYTES.weigh(goodbye),
+                    cache.weight());
+        }
+    }
+
+    @Test
+    public void testStats() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            cache.getUnchecked(id("hello.txt"));
+            cache.getUnchecked(id("hello.txt"));
+            cache.getUnchecked(id("hello.txt"));
+
+            assertEquals(type.name(), 2, cache.stats().hitCount());
+            assertEquals(type.name(), 1, cache.stats().missCount());
+            assertEquals(type.name(), 1, cache.stats().loadSuccessCount());
+        }
+    }
+
+    @Test
+    public void testLoadFailure() {
+        for (AssetCacheType type : AssetCacheType.values()) {
+            AssetCache cache = build(type);
+            try {
+                cache.getUnchecked(id("broken.txt"));
+                fail();
+            } catch (UncheckedExecutionException e) {
+                assertEquals("broken", e.getCause().getMessage());
+            }
+
+            assertNull(cache.getIfPresent(id("broken.txt")));
+            assertEquals(type.name(), 1, cache.stats().loadExceptionCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CacheLoader<AssetId, Asset> slowLoader = new CacheLoader<AssetId, Asset>() {
+            @Override
+            public Asset load(AssetId id) throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return new Asset(new byte[10], MediaType.PLAIN_TEXT_UTF_8);
+            }
+        };
+
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.setType(AssetCacheType.TINY_LFU);
+        final AssetCache cache = configuration.build(slowLoader);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        cache.getUnchecked(id("hello.txt"));
+                    }
+                });
+            }
+
+            started.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testRefreshServesStaleAsset() throws Exception {
+        final List<Runnable> reloads = Lists.newArrayList();
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.setRefreshAfterWrite(Duration.milliseconds(1));
+        AssetCache cache = configuration.build(CacheLoader.asyncReloading(loader, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                reloads.add(command);
+            }
+        }));
+
+        Asset asset = cache.getUnchecked(id("hello.txt"));
+        Thread.sleep(10);
+
+        // The stale asset is served while it's being reloaded
+        assertSame(asset, cache.getUnchecked(id("hello.txt")));
+        assertEquals(1, reloads.size());
+
+        reloads.get(0).run();
+        assertNotSame(asset, cache.getIfPresent(id("hello.txt")));
+        assertEquals(2, loads.get());
+    }
+
+    private AssetCache build(AssetCacheType type) {
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.setType(type);
+        return configuration.build(loader);
+    }
+
+    private static AssetId id(String resource) {
+        return new AssetId("test-webjar", resource);
+    }
+}
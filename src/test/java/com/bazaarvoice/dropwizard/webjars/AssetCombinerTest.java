@@ -0,0 +1,104 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AssetCombinerTest {
+    private static final String QUERY = "bootstrap/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css";
+
+    private final WebJarConfiguration configuration = new WebJarConfiguration();
+    private final AssetLoader loader = new AssetLoader(
+            new VersionLoader(ImmutableList.of("org.webjars")), null, configuration);
+    private final AssetCache cache = configuration.getCache().build(loader);
+    private final AtomicInteger resolved = new AtomicInteger();
+    private final AssetCombiner combiner = new AssetCombiner(cache, loader, new Function<String, AssetId>() {
+        @Override
+        public AssetId apply(String path) {
+            resolved.incrementAndGet();
+            int slash = path.indexOf('/');
+            return new AssetId(path.substring(0, slash), path.substring(slash + 1));
+        }
+    }, configuration);
+
+    @Test
+    public void testHashOfAssetHashes() {
+        Asset combination = combiner.get(QUERY);
+
+        String hash = Hashing.murmur3_128().newHasher()
+                .putString(cache.getUnchecked(new AssetId("bootstrap", "css/bootstrap.css")).hash, Charsets.UTF_8)
+                .putString(cache.getUnchecked(new AssetId("bootstrap", "css/bootstrap-responsive.css")).hash,
+                        Charsets.UTF_8)
+                .hash().toString();
+        assertEquals(hash, combination.hash);
+        assertEquals('"' + hash + '"', combination.eTag);
+    }
+
+    @Test
+    public void testConcurrentRequestsCombineOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Asset>> futures = executor.invokeAll(Collections.nCopies(32, new Callable<Asset>() {
+                @Override
+                public Asset call() throws Exception {
+                    return combiner.get(QUERY);
+                }
+            }));
+
+            Asset combination = futures.get(0).get();
+            for (Future<Asset> future : futures) {
+                assertSame(combination, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, combiner.getCache().stats().loadCount());
+        assertEquals(1, combiner.getCache().size());
+    }
+
+    @Test
+    public void testFailedCombinationsNotKept() {
+        assertSame(AssetLoader.NOT_FOUND, combiner.get("bootstrap/css/missing.css"));
+        assertSame(AssetCombiner.INVALID, combiner.get("bootstrap/css/bootstrap.css&bootstrap/js/bootstrap.js"));
+        assertEquals(0, combiner.getCache().size());
+    }
+
+    @Test
+    public void testTooManyAssets() {
+        List<String> paths = Lists.newArrayList(
+                Collections.nCopies(AssetCombiner.MAXIMUM_ASSETS + 1, "bootstrap/css/bootstrap.css"));
+        assertSame(AssetCombiner.INVALID, combiner.get(Joiner.on('&').join(paths)));
+        assertEquals(0, resolved.get());
+    }
+
+    @Test
+    public void testMalformedEscape() {
+        assertSame(AssetCombiner.INVALID, combiner.get("bootstrap/css/bootstrap.css&bootstrap/css/%zz.css"));
+        assertSame(AssetCombiner.INVALID, combiner.get("bootstrap/css/bootstrap%"));
+        assertEquals(0, combiner.getCache().size());
+    }
+
+    @Test
+    public void testEquivalentQueriesShareACombination() {
+        Asset combination = combiner.get(QUERY);
+        assertSame(combination, combiner.get("bootstrap/css/bootstrap%2Ecss&&bootstrap/css/bootstrap-responsive.css"));
+        assertEquals(1, combiner.getCache().size());
+        assertEquals(1, combiner.getCache().stats().loadCount());
+    }
+}
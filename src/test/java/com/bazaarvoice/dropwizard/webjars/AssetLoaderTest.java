@@ -0,0 +1,165 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AssetLoaderTest {
+    private static final AssetId BOOTSTRAP_CSS = new AssetId("bootstrap", "css/bootstrap.css");
+
+    private final WebJarConfiguration configuration = new WebJarConfiguration();
+
+    @Test
+    public void testLastModifiedTimeIgnoresTimezone() throws Exception {
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            long west = newLoader().load(BOOTSTRAP_CSS).lastModifiedTime;
+
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            long east = newLoader().load(BOOTSTRAP_CSS).lastModifiedTime;
+
+            assertEquals(west, east);
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void testEntryTimeIgnoresTimezone() {
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            ZipEntry entry = new ZipEntry("hello.txt");
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            entry.setTime(1400000000000L);
+            long west = AssetLoader.getEntryTime(entry);
+
+            // The same DOS timestamp read somewhere else
+            ZipEntry copy = new ZipEntry(entry);
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            assertEquals(west, AssetLoader.getEntryTime(copy));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        configuration.setBulkLoad(true);
+        AssetLoader loader = newLoader();
+        assertTrue(loader.isBulkLoadable(BOOTSTRAP_CSS));
+
+        Map<AssetId, Asset> assets = loader.loadAll(ImmutableList.of(BOOTSTRAP_CSS));
+        assertFalse(loader.isBulkLoadable(BOOTSTRAP_CSS));
+        assertFalse(loader.isBulkLoadable(new AssetId("bootstrap", "js/bootstrap.js")));
+
+        // The asset that was asked for is always loaded, the rest of the library only if it's small enough
+        assertEquals(127247, assets.get(BOOTSTRAP_CSS).bytes.remaining());
+        assertFalse(assets.containsKey(new AssetId("bootstrap", "js/bootstrap.js")));
+
+        Asset responsive = assets.get(new AssetId("bootstrap", "css/bootstrap-responsive.css"));
+        assertNotNull(responsive);
+        assertEquals(responsive.hash, loader.load(new AssetId("bootstrap", "css/bootstrap-responsive.css")).hash);
+        assertEquals("2.3.1", responsive.version);
+        assertNotNull(assets.get(new AssetId("bootstrap", "img/glyphicons-halflings.png")));
+        assertNotNull(assets.get(new AssetId("bootstrap", "less/variables.less")));
+    }
+
+    @Test
+    public void testFailedBulkLoadStillReturnsAsset() throws Exception {
+        configuration.setBulkLoad(true);
+        AssetLoader loader = new AssetLoader(new VersionLoader(ImmutableList.of("org.webjars")), null, configuration) {
+            @Override
+            Map<String, Asset> readLibrary(String library, String version, String name) throws IOException {
+                throw new IOException("broken jar");
+            }
+        };
+
+        Map<AssetId, Asset> assets = loader.loadAll(ImmutableList.of(BOOTSTRAP_CSS));
+        assertEquals(1, assets.size());
+        assertEquals(127247, assets.get(BOOTSTRAP_CSS).bytes.remaining());
+
+        // The library wasn't read, so the next load tries again
+        assertTrue(loader.isBulkLoadable(BOOTSTRAP_CSS));
+    }
+
+    @Test
+    public void testBulkLoadMaximumCount() throws Exception {
+        configuration.setBulkLoad(true);
+        configuration.setBulkLoadMaximumCount(3);
+
+        Map<AssetId, Asset> assets = newLoader().loadAll(ImmutableList.of(BOOTSTRAP_CSS));
+        assertEquals(4, assets.size());
+    }
+
+    @Test
+    public void testBulkLoadPrefersMinified() throws Exception {
+        configuration.setBulkLoad(true);
+        configuration.setPreferMinified(true);
+
+        Map<AssetId, Asset> assets = newLoader().loadAll(ImmutableList.of(BOOTSTRAP_CSS));
+        Asset script = assets.get(new AssetId("bootstrap", "js/bootstrap.js"));
+        assertEquals(28538, script.bytes.remaining());
+    }
+
+    @Test
+    public void testBulkLoadDisabledByDefault() throws Exception {
+        AssetLoader loader = newLoader();
+        assertFalse(loader.isBulkLoadable(BOOTSTRAP_CSS));
+        assertEquals(1, loader.loadAll(ImmutableList.of(BOOTSTRAP_CSS)).size());
+    }
+
+    @Test
+    public void testResourcesOutsideOfJarsNotBulkLoaded() throws Exception {
+        configuration.setBulkLoad(true);
+        AssetLoader loader = new AssetLoader(new VersionLoader(ImmutableList.of("com.bazaarvoice")), null,
+                configuration);
+
+        AssetId id = new AssetId("test-webjar", "hello.txt");
+        Map<AssetId, Asset> assets = loader.loadAll(ImmutableList.of(id));
+        assertEquals(1, assets.size());
+        assertSame(assets.get(id), assets.values().iterator().next());
+        assertFalse(loader.isBulkLoadable(id));
+    }
+
+    @Test
+    public void testDeduplicate() throws Exception {
+        configuration.setDeduplicate(true);
+        AssetLoader loader = new AssetLoader(new VersionLoader(ImmutableList.of("com.bazaarvoice")), null,
+                configuration);
+
+        Asset license = loader.load(new AssetId("test-webjar", "LICENSE.txt"));
+        Asset copy = loader.load(new AssetId("test-plugin", "LICENSE.txt"));
+        assertSame(license.bytes, copy.bytes);
+        assertTrue(copy.shared);
+        assertEquals(1, loader.getContentStore().getSharedCount());
+
+        assertNotSame(license.bytes, loader.load(new AssetId("test-webjar", "hello.txt")).bytes);
+    }
+
+    @Test
+    public void testNotDeduplicatedByDefault() throws Exception {
+        AssetLoader loader = new AssetLoader(new VersionLoader(ImmutableList.of("com.bazaarvoice")), null,
+                configuration);
+
+        Asset license = loader.load(new AssetId("test-webjar", "LICENSE.txt"));
+        Asset copy = loader.load(new AssetId("test-plugin", "LICENSE.txt"));
+        assertNotSame(license.bytes, copy.bytes);
+        assertFalse(copy.shared);
+    }
+
+    private AssetLoader newLoader() {
+        return new AssetLoader(new VersionLoader(ImmutableList.of("org.webjars")), null, configuration);
+    }
+}
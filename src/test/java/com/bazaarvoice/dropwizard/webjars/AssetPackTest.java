@@ -0,0 +1,155 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AssetPackTest {
+    private static final List<String> GROUPS = ImmutableList.of("org.webjars", "com.bazaarvoice");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final WebJarConfiguration configuration = new WebJarConfiguration();
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration.setGzip(true);
+        configuration.setPreferMinified(true);
+        file = new File(folder.getRoot(), "assets.pack");
+        new AssetPackWriter(GROUPS, configuration).write(getClass().getClassLoader(), file);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        AssetPack pack = read(file.toURI().toURL());
+        AssetLoader loader = new AssetLoader(new VersionLoader(GROUPS), null, configuration);
+
+        assertEquals(ImmutableSet.of("bootstrap", "jquery", "test-plugin", "test-webjar"), pack.getLibraries());
+        for (String resource : new String[] { "app.js", "style.css", "hello.txt", "LICENSE.txt" }) {
+            Asset packed = pack.get("test-webjar", resource);
+            Asset loaded = loader.load(new AssetId("test-webjar", resource));
+            assertEquals(loaded.bytes, packed.bytes);
+            assertEquals(loaded.gzipBytes, packed.gzipBytes);
+            assertEquals(loaded.contentType, packed.contentType);
+            assertEquals(loaded.version, packed.version);
+            assertEquals(loaded.lastModifiedTime, packed.lastModifiedTime);
+            assertEquals(loaded.hash, packed.hash);
+            assertEquals(loaded.getIntegrity(), packed.getIntegrity());
+            assertEquals(loaded.sourceMap, packed.sourceMap);
+        }
+
+        // Compressed forms are packed too
+        assertNotNull(pack.get("bootstrap", "css/bootstrap.css").gzipBytes);
+    }
+
+    @Test
+    public void testVersions() throws Exception {
+        AssetPack pack = read(file.toURI().toURL());
+        assertEquals("2.3.1", pack.getVersion("bootstrap"));
+        assertEquals(ImmutableSet.of("2.3.1"), pack.getVersions("bootstrap"));
+        assertNull(pack.getVersion("webjar-that-does-not-exist"));
+        assertTrue(pack.getVersions("webjar-that-does-not-exist").isEmpty());
+    }
+
+    @Test
+    public void testMissing() throws Exception {
+        AssetPack pack = read(file.toURI().toURL());
+        assertNull(pack.get("bootstrap", "css/missing.css"));
+        assertNull(pack.get("webjar-that-does-not-exist", "hello.txt"));
+    }
+
+    @Test
+    public void testDifferentSettingsIgnored() throws Exception {
+        assertNull(AssetPack.read(file.toURI().toURL(), AssetPack.getSettings(GROUPS, new WebJarConfiguration())));
+        assertNull(AssetPack.read(file.toURI().toURL(),
+                AssetPack.getSettings(ImmutableList.of("org.webjars"), configuration)));
+    }
+
+    @Test
+    public void testNotAPack() throws Exception {
+        File other = folder.newFile("other.pack");
+        Files.write("Hello World!", other, Charsets.UTF_8);
+        assertNull(read(other.toURI().toURL()));
+    }
+
+    @Test
+    public void testReadFromJar() throws Exception {
+        File jar = folder.newFile("assets.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry(AssetPackWriter.RESOURCE));
+            Files.copy(file, out);
+        } finally {
+            out.close();
+        }
+
+        AssetPack pack = read(new URL("jar:" + jar.toURI() + "!/" + AssetPackWriter.RESOURCE));
+        assertEquals(read(file.toURI().toURL()).get("jquery", "jquery.js").bytes, pack.get("jquery", "jquery.js").bytes);
+
+        // The pack is mapped from a copy rather than read onto the heap
+        assertTrue(pack.get("jquery", "jquery.js").bytes.isDirect());
+    }
+
+    @Test
+    public void testLoaderServesPackedLibraries() throws Exception {
+        AssetPack pack = read(file.toURI().toURL());
+        AssetLoader loader = new AssetLoader(new VersionLoader(GROUPS), null, pack, configuration);
+
+        Asset asset = loader.load(new AssetId("test-webjar", "hello.txt"));
+        assertEquals(pack.get("test-webjar", "hello.txt").bytes, asset.bytes);
+        assertSame(AssetLoader.NOT_FOUND, loader.load(new AssetId("test-webjar", "missing.txt")));
+        assertEquals("1.0", loader.getVersion("test-webjar"));
+
+        // Other versions aren't packed, so they're still loaded from the classpath
+        Asset legacy = loader.load(new AssetId("test-webjar", "0.9", "hello.txt"));
+        assertEquals("0.9", legacy.version);
+        assertFalse(toString(legacy.bytes).equals(toString(asset.bytes)));
+    }
+
+    @Test
+    public void testLoaderIgnoresPackedLibrariesOfOtherVersions() throws Exception {
+        List<String> legacyGroups = ImmutableList.of("com.bazaarvoice.legacy");
+        File legacy = new File(folder.getRoot(), "legacy.pack");
+        new AssetPackWriter(legacyGroups, configuration).write(getClass().getClassLoader(), legacy);
+        AssetPack pack = AssetPack.read(legacy.toURI().toURL(), AssetPack.getSettings(legacyGroups, configuration));
+        assertEquals("0.9-1", pack.getVersion("test-webjar"));
+
+        // The classpath resolves a different version than the one in the pack, so the pack isn't used
+        AssetLoader loader = new AssetLoader(new VersionLoader(ImmutableList.of("com.bazaarvoice")), null, pack,
+                configuration);
+        assertEquals("1.0", loader.getVersion("test-webjar"));
+        assertEquals("1.0", loader.load(new AssetId("test-webjar", "hello.txt")).version);
+    }
+
+    private AssetPack read(URL url) throws Exception {
+        return AssetPack.read(url, AssetPack.getSettings(GROUPS, configuration));
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
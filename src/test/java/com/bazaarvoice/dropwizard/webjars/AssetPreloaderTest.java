@@ -0,0 +1,84 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AssetPreloaderTest {
+    private AssetPreloader preloader;
+
+    @After
+    public void teardown() throws Exception {
+        if (preloader != null) {
+            preloader.stop();
+        }
+    }
+
+    @Test
+    public void testLibraryGlob() {
+        Pattern pattern = AssetPreloader.toPattern("jquery");
+        assertTrue(pattern.matcher("jquery/jquery.js").matches());
+        assertTrue(pattern.matcher("jquery/dist/jquery.js").matches());
+        assertFalse(pattern.matcher("bootstrap/js/bootstrap.js").matches());
+    }
+
+    @Test
+    public void testResourceGlob() {
+        Pattern pattern = AssetPreloader.toPattern("bootstrap/css/*.css");
+        assertTrue(pattern.matcher("bootstrap/css/bootstrap.css").matches());
+        assertFalse(pattern.matcher("bootstrap/css/nested/bootstrap.css").matches());
+        assertFalse(pattern.matcher("bootstrap/js/bootstrap.js").matches());
+    }
+
+    @Test
+    public void testRecursiveGlob() {
+        Pattern pattern = AssetPreloader.toPattern("bootstrap/**.png");
+        assertTrue(pattern.matcher("bootstrap/img/glyphicons-halflings.png").matches());
+        assertFalse(pattern.matcher("bootstrap/css/bootstrap.css").matches());
+    }
+
+    @Test
+    public void testUnknownSizeIsNeverSmallEnough() {
+        assertTrue(AssetPreloader.isSmallEnough(100, 1024));
+        assertFalse(AssetPreloader.isSmallEnough(2048, 1024));
+        assertFalse(AssetPreloader.isSmallEnough(-1, 1024));
+        assertFalse(AssetPreloader.isSmallEnough(100, 0));
+    }
+
+    @Test
+    public void testHealthyOncePreloaded() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreload(ImmutableList.of("bootstrap/css/*.css", "jquery"));
+
+        preloader = new AssetPreloader(new WebJarServlet(null, null, configuration), configuration);
+        HealthCheck healthCheck = preloader.getHealthCheck();
+        assertFalse(healthCheck.execute().isHealthy());
+
+        preloader.start();
+        waitForHealthy(healthCheck);
+    }
+
+    @Test
+    public void testPreloadBySize() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreloadMaximumSize(16 * 1024);
+
+        preloader = new AssetPreloader(new WebJarServlet(null, null, configuration), configuration);
+        preloader.start();
+        waitForHealthy(preloader.getHealthCheck());
+    }
+
+    private static void waitForHealthy(HealthCheck healthCheck) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!healthCheck.execute().isHealthy()) {
+            assertTrue("Preloading didn't finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+    @Test
+    public void testSingleRanges() {
+        assertEquals("[0-99]", ByteRange.parse("bytes=0-99", 1000).toString());
+        assertEquals("[500-999]", ByteRange.parse("bytes=500-", 1000).toString());
+        assertEquals("[900-999]", ByteRange.parse("bytes=-100", 1000).toString());
+        assertEquals("[0-999]", ByteRange.parse("bytes=-5000", 1000).toString());
+        assertEquals("[990-999]", ByteRange.parse("bytes=990-5000", 1000).toString());
+        assertEquals("[990-999]", ByteRange.parse("Bytes=990-99999999999999999999999", 1000).toString());
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        assertEquals("[0-9, 20-29]", ByteRange.parse("bytes=20-29, 0-9", 1000).toString());
+        assertEquals("[0-29]", ByteRange.parse("bytes=0-9,10-19,15-29", 1000).toString());
+        assertEquals("[0-999]", ByteRange.parse("bytes=0-,-100", 1000).toString());
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+        assertEquals("[0-0]", ByteRange.parse("bytes=2000-3000, 0-0", 1000).toString());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=", 1000));
+        assertNull(ByteRange.parse("bytes=10", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=a-5", 1000));
+        assertNull(ByteRange.parse("bytes=0-1, x", 1000));
+    }
+
+    @Test
+    public void testTooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRange.MAXIMUM_RANGES; i++) {
+            header.append(',').append(i * 2).append('-').append(i * 2);
+        }
+
+        assertNull(ByteRange.parse(header.toString(), 1000));
+    }
+
+    @Test
+    public void testContentRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=10-19", 1000);
+        assertEquals("bytes 10-19/1000", ranges.get(0).toContentRange(1000));
+        assertEquals(10, ranges.get(0).length());
+    }
+}
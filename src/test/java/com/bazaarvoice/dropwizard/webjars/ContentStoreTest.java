@@ -0,0 +1,93 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheLoader;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContentStoreTest {
+    private final ContentStore store = new ContentStore();
+
+    @Test
+    public void testIdenticalAssetsShareBytes() {
+        Asset first = store.intern(asset("Hello World!", "1.0"));
+        Asset second = store.intern(asset("Hello World!", "2.0"));
+
+        assertFalse(first.shared);
+        assertTrue(second.shared);
+        assertSame(first.bytes, second.bytes);
+        assertSame(first.gzipBytes, second.gzipBytes);
+        assertEquals("2.0", second.version);
+        assertEquals(first.eTag, second.eTag);
+
+        assertEquals(1, store.getSharedCount());
+        assertEquals(24, store.getSharedBytes());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testDifferentAssetsDoNotShareBytes() {
+        Asset hello = store.intern(asset("Hello World!", "1.0"));
+        Asset goodbye = store.intern(asset("Goodbye World!", "1.0"));
+
+        assertNotSame(hello.bytes, goodbye.bytes);
+        assertFalse(goodbye.shared);
+        assertEquals(0, store.getSharedCount());
+    }
+
+    @Test
+    public void testSameHashWithDifferentBytes() {
+        Asset hello = asset("Hello World!", "1.0");
+        store.intern(hello);
+
+        Asset collision = new Asset(AssetStorage.HEAP.store("Goodbye World!".getBytes(Charsets.UTF_8)), null,
+                MediaType.PLAIN_TEXT_UTF_8, "1.0", 0, hello.hash, null, null);
+        assertSame(collision, store.intern(collision));
+    }
+
+    @Test
+    public void testMissingAssetsNotInterned() {
+        assertSame(AssetLoader.NOT_FOUND, store.intern(AssetLoader.NOT_FOUND));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testSharedAssetsWeighTheirBytes() {
+        store.intern(asset("Hello World!", "1.0"));
+        Asset shared = store.intern(asset("Hello World!", "2.0"));
+
+        assertTrue(shared.shared);
+        assertEquals(24, AssetCacheWeigher.BYTES.weigh(shared));
+    }
+
+    @Test
+    public void testSharedBytesStillWeighedOnceTheirOwnerIsEvicted() {
+        AssetCache cache = new AssetCacheConfiguration().build(new CacheLoader<AssetId, Asset>() {
+            @Override
+            public Asset load(AssetId id) throws Exception {
+                return store.intern(asset("Hello World!", id.version));
+            }
+        });
+
+        AssetId owner = new AssetId("hello", "1.0", "hello.txt");
+        AssetId sharer = new AssetId("hello", "2.0", "hello.txt");
+        cache.getUnchecked(owner);
+        assertTrue(cache.getUnchecked(sharer).shared);
+        assertEquals(48, cache.weight());
+
+        cache.invalidate(owner);
+        assertEquals(24, cache.weight());
+    }
+
+    private static Asset asset(String content, String version) {
+        // Not real gzip, but it's only the buffers that matter here
+        byte[] bytes = content.getBytes(Charsets.UTF_8);
+        return new Asset(bytes, bytes.clone(), MediaType.PLAIN_TEXT_UTF_8, version, 0, AssetStorage.HEAP);
+    }
+}
@@ -0,0 +1,54 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest {
+    private final DependencyGraph graph = new DependencyGraph(ImmutableList.of("org.webjars", "com.bazaarvoice"));
+
+    @Test
+    public void testDependencies() {
+        assertEquals(ImmutableList.of("jquery"), graph.getDependencies("bootstrap"));
+        assertTrue(graph.getDependencies("jquery").isEmpty());
+    }
+
+    @Test
+    public void testOnlyRuntimeDependenciesInGroups() {
+        // Managed, optional, test scoped and non-WebJar dependencies are all left out
+        assertEquals(ImmutableList.of("test-plugin", "bootstrap"), graph.getDependencies("test-webjar"));
+    }
+
+    @Test
+    public void testOtherGroupsIgnored() {
+        DependencyGraph graph = new DependencyGraph(ImmutableList.of("com.bazaarvoice"));
+        assertEquals(ImmutableList.of("test-plugin"), graph.getDependencies("test-webjar"));
+    }
+
+    @Test
+    public void testTransitiveDependencies() {
+        assertEquals(ImmutableList.of("test-plugin", "bootstrap", "jquery"),
+                graph.getTransitiveDependencies("test-webjar"));
+    }
+
+    @Test
+    public void testCycle() {
+        assertEquals(ImmutableList.of("test-webjar", "bootstrap", "jquery"),
+                graph.getTransitiveDependencies("test-plugin"));
+    }
+
+    @Test
+    public void testLibraryWithoutPom() {
+        assertTrue(graph.getDependencies("webjar-that-does-not-exist").isEmpty());
+        assertTrue(graph.getTransitiveDependencies("webjar-that-does-not-exist").isEmpty());
+    }
+
+    @Test
+    public void testLoadedOnce() {
+        assertSame(graph.getDependencies("bootstrap"), graph.getDependencies("bootstrap"));
+        assertSame(graph.getTransitiveDependencies("bootstrap"), graph.getTransitiveDependencies("bootstrap"));
+    }
+}
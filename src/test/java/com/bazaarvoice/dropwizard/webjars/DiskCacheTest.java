@@ -0,0 +1,106 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.net.MediaType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DiskCacheTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DiskCache diskCache = new DiskCache(folder.getRoot(), new WebJarConfiguration());
+        Asset asset = asset("Hello World!", "Compressed", "hello.min.map");
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset);
+
+        Asset cached = diskCache.get("test-webjar", "1.0", "hello.txt");
+        assertEquals("Hello World!", toString(cached.bytes));
+        assertEquals("Compressed", toString(cached.gzipBytes));
+        assertEquals(asset.mediaType, cached.mediaType);
+        assertEquals(asset.version, cached.version);
+        assertEquals(asset.lastModifiedTime, cached.lastModifiedTime);
+        assertEquals(asset.hash, cached.hash);
+        assertEquals(asset.eTag, cached.eTag);
+        assertEquals(asset.getIntegrity(), cached.getIntegrity());
+        assertEquals(asset.sourceMap, cached.sourceMap);
+        assertEquals(1, diskCache.getHitCount());
+    }
+
+    @Test
+    public void testIntegrityOnlyWrittenOnceComputed() throws Exception {
+        DiskCache diskCache = new DiskCache(folder.getRoot(), new WebJarConfiguration());
+        Asset asset = asset("Hello World!", null, null);
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset);
+        assertNull(asset.getComputedIntegrity());
+        assertNull(diskCache.get("test-webjar", "1.0", "hello.txt").getComputedIntegrity());
+
+        String integrity = asset.getIntegrity();
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset);
+        assertEquals(integrity, diskCache.get("test-webjar", "1.0", "hello.txt").getComputedIntegrity());
+    }
+
+    @Test
+    public void testWithoutCompressedForm() throws Exception {
+        DiskCache diskCache = new DiskCache(folder.getRoot(), new WebJarConfiguration());
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset("Hello World!", null, null));
+
+        Asset cached = diskCache.get("test-webjar", "1.0", "hello.txt");
+        assertEquals("Hello World!", toString(cached.bytes));
+        assertNull(cached.gzipBytes);
+        assertNull(cached.sourceMap);
+    }
+
+    @Test
+    public void testMiss() {
+        DiskCache diskCache = new DiskCache(folder.getRoot(), new WebJarConfiguration());
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset("Hello World!", null, null));
+
+        assertNull(diskCache.get("test-webjar", "0.9", "hello.txt"));
+        assertNull(diskCache.get("test-webjar", "1.0", "goodbye.txt"));
+        assertEquals(2, diskCache.getMissCount());
+    }
+
+    @Test
+    public void testSettingsArePartOfTheKey() {
+        new DiskCache(folder.getRoot(), new WebJarConfiguration())
+                .put("test-webjar", "1.0", "hello.txt", asset("Hello World!", null, null));
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(true);
+        assertNull(new DiskCache(folder.getRoot(), configuration).get("test-webjar", "1.0", "hello.txt"));
+    }
+
+    @Test
+    public void testCorruptEntry() throws Exception {
+        DiskCache diskCache = new DiskCache(folder.getRoot(), new WebJarConfiguration());
+        diskCache.put("test-webjar", "1.0", "hello.txt", asset("Hello World!", null, null));
+
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        Files.write("garbage".getBytes(Charsets.UTF_8), files[0]);
+
+        assertNull(diskCache.get("test-webjar", "1.0", "hello.txt"));
+    }
+
+    private static Asset asset(String content, String gzipContent, String sourceMap) {
+        return new Asset(content.getBytes(Charsets.UTF_8),
+                (gzipContent != null) ? gzipContent.getBytes(Charsets.UTF_8) : null,
+                MediaType.PLAIN_TEXT_UTF_8, "1.0", 1400000000000L, AssetStorage.HEAP, sourceMap);
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+    @Test
+    public void testCounts() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        assertEquals(0, sketch.frequency("a"));
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a");
+        }
+        sketch.increment("b");
+
+        assertEquals(5, sketch.frequency("a"));
+        assertEquals(1, sketch.frequency("b"));
+    }
+
+    @Test
+    public void testCountsAreCapped() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    public void testCountsAge() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("a");
+        }
+
+        // Counting enough other keys halves every count
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment("key-" + i);
+        }
+
+        assertTrue(sketch.frequency("a") < 15);
+    }
+}
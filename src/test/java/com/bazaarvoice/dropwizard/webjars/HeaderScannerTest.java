@@ -0,0 +1,68 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeaderScannerTest {
+    private static final String HASH = "0123456789abcdef";
+    private static final String SUFFIX = "-gzip";
+
+    @Test
+    public void testMatchingETag() {
+        assertTrue(HeaderScanner.matchesETag('"' + HASH + '"', HASH, ""));
+        assertTrue(HeaderScanner.matchesETag("W/\"" + HASH + '"', HASH, ""));
+        assertTrue(HeaderScanner.matchesETag('"' + HASH + SUFFIX + '"', HASH, SUFFIX));
+        assertTrue(HeaderScanner.matchesETag("\"other\",  \"" + HASH + "\" ", HASH, ""));
+        assertTrue(HeaderScanner.matchesETag("\"with,comma\", \"" + HASH + '"', HASH, ""));
+    }
+
+    @Test
+    public void testETagOfOtherEncoding() {
+        assertFalse(HeaderScanner.matchesETag('"' + HASH + '"', HASH, SUFFIX));
+        assertFalse(HeaderScanner.matchesETag('"' + HASH + SUFFIX + '"', HASH, ""));
+    }
+
+    @Test
+    public void testWildcardETag() {
+        assertTrue(HeaderScanner.matchesETag("*", HASH, SUFFIX));
+        assertTrue(HeaderScanner.matchesETag(" * ", HASH, SUFFIX));
+        assertTrue(HeaderScanner.matchesETag("\"other\", *", HASH, SUFFIX));
+        assertFalse(HeaderScanner.matchesETag("*other", HASH, SUFFIX));
+    }
+
+    @Test
+    public void testNonMatchingETag() {
+        assertFalse(HeaderScanner.matchesETag("", HASH, SUFFIX));
+        assertFalse(HeaderScanner.matchesETag(HASH, HASH, ""));
+        assertFalse(HeaderScanner.matchesETag('"' + HASH + "0\"", HASH, ""));
+        assertFalse(HeaderScanner.matchesETag('"' + HASH.substring(1) + '"', HASH, ""));
+        assertFalse(HeaderScanner.matchesETag('"' + HASH + "-deflate\"", HASH, SUFFIX));
+        assertFalse(HeaderScanner.matchesETag('"' + HASH, HASH, ""));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(HeaderScanner.acceptsGzip("gzip"));
+        assertTrue(HeaderScanner.acceptsGzip("deflate, GZIP"));
+        assertTrue(HeaderScanner.acceptsGzip("x-gzip"));
+        assertTrue(HeaderScanner.acceptsGzip("gzip;q=0.5"));
+        assertTrue(HeaderScanner.acceptsGzip("gzip ; level=1; q=0.001"));
+        assertTrue(HeaderScanner.acceptsGzip("*"));
+        assertTrue(HeaderScanner.acceptsGzip("identity, *;q=1"));
+    }
+
+    @Test
+    public void testRejectsGzip() {
+        assertFalse(HeaderScanner.acceptsGzip(null));
+        assertFalse(HeaderScanner.acceptsGzip(""));
+        assertFalse(HeaderScanner.acceptsGzip("deflate"));
+        assertFalse(HeaderScanner.acceptsGzip("gzipped"));
+        assertFalse(HeaderScanner.acceptsGzip("gzip;q=0"));
+        assertFalse(HeaderScanner.acceptsGzip("gzip; q=0.000"));
+        assertFalse(HeaderScanner.acceptsGzip("gzip;q=abc"));
+        assertFalse(HeaderScanner.acceptsGzip("gzip;q=0, *"));
+        assertFalse(HeaderScanner.acceptsGzip("*;q=0"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.MediaType;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoadSchedulerTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AssetCache cache = new AssetCacheConfiguration().build(new CacheLoader<AssetId, Asset>() {
+        @Override
+        public Asset load(AssetId id) throws Exception {
+            loads.incrementAndGet();
+            release.await();
+            return new Asset(id.resource.getBytes(Charsets.UTF_8), MediaType.PLAIN_TEXT_UTF_8);
+        }
+    });
+    private final AssetLoader loader = new AssetLoader(
+            new VersionLoader(ImmutableList.of("org.webjars")), null, new WebJarConfiguration());
+
+    // One loader thread and room for one load in the queue
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(1));
+    private final LoadScheduler scheduler = new LoadScheduler(cache, loader, executor, 100);
+
+    @After
+    public void teardown() {
+        release.countDown();
+        executor.shutdownNow();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        ListenableFuture<Asset> first = scheduler.load(id("hello.txt"));
+        ListenableFuture<Asset> second = scheduler.load(id("hello.txt"));
+        assertSame(first, second);
+        assertEquals(1, scheduler.getLoadCount());
+        assertEquals(1, scheduler.getCoalescedCount());
+
+        release.countDown();
+        Asset asset = first.get(10, TimeUnit.SECONDS);
+        assertSame(asset, cache.getIfPresent(id("hello.txt")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testRejectedWhenQueueIsFull() throws Exception {
+        scheduler.load(id("one.txt"));
+        scheduler.load(id("two.txt"));
+
+        ListenableFuture<Asset> rejected = scheduler.load(id("three.txt"));
+        try {
+            rejected.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        try {
+            scheduler.get(id("four.txt"));
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        assertEquals(2, scheduler.getRejectedCount());
+        assertEquals(2, scheduler.getLoadCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        try {
+            scheduler.get(id("hello.txt"));
+            fail();
+        } catch (TimeoutException e) {
+            // Expected
+        }
+        assertEquals(1, scheduler.getTimeoutCount());
+
+        // The load carries on, so the asset is there for the requests after
+        release.countDown();
+        assertNotNull(scheduler.load(id("hello.txt")).get(10, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testCallback() throws Exception {
+        SettableFuture<Asset> loaded = callback(id("hello.txt"));
+        release.countDown();
+        assertSame(cache.getUnchecked(id("hello.txt")), loaded.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCallbackTimeout() throws Exception {
+        SettableFuture<Asset> loaded = callback(id("hello.txt"));
+        try {
+            loaded.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, scheduler.getTimeoutCount());
+    }
+
+    /** Load an asset with a callback, returning a future that the callback completes. */
+    private SettableFuture<Asset> callback(AssetId id) {
+        final SettableFuture<Asset> future = SettableFuture.create();
+        scheduler.get(id, new FutureCallback<Asset>() {
+            @Override
+            public void onSuccess(Asset asset) {
+                future.set(asset);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.setException(t);
+            }
+        });
+        return future;
+    }
+
+    private static AssetId id(String resource) {
+        return new AssetId("test-webjar", resource);
+    }
+}
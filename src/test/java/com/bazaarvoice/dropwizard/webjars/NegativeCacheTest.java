@@ -0,0 +1,61 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeCacheTest {
+    private final ClassLoader classLoader = NegativeCacheTest.class.getClassLoader();
+
+    @Test
+    public void testRemembersMissing() {
+        NegativeCache negativeCache = new NegativeCache(new WebJarConfiguration(), null);
+        assertFalse(negativeCache.isMissingLibrary("webjar-that-does-not-exist"));
+        assertFalse(negativeCache.isMissing(new AssetId("bootstrap", "css/missing.css")));
+
+        negativeCache.addLibrary("webjar-that-does-not-exist");
+        negativeCache.add(new AssetId("bootstrap", "css/missing.css"));
+
+        assertTrue(negativeCache.isMissingLibrary("webjar-that-does-not-exist"));
+        assertTrue(negativeCache.isMissing(new AssetId("bootstrap", "css/missing.css")));
+        assertFalse(negativeCache.isMissingLibrary("bootstrap"));
+    }
+
+    @Test
+    public void testMaximumSize() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setNegativeCacheMaximumSize(10);
+        NegativeCache negativeCache = new NegativeCache(configuration, null);
+
+        for (int i = 0; i < 1000; i++) {
+            negativeCache.addLibrary("library-" + i);
+        }
+
+        assertTrue(negativeCache.getCache().size() <= 10);
+    }
+
+    @Test
+    public void testDisabled() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setNegativeCacheMaximumSize(0);
+        NegativeCache negativeCache = new NegativeCache(configuration, null);
+
+        negativeCache.addLibrary("webjar-that-does-not-exist");
+        assertFalse(negativeCache.isMissingLibrary("webjar-that-does-not-exist"));
+        assertEquals(0, negativeCache.getCache().size());
+    }
+
+    @Test
+    public void testBloomFilter() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader, ImmutableList.of("org.webjars"));
+        NegativeCache negativeCache = new NegativeCache(new WebJarConfiguration(), NegativeCache.buildFilter(index));
+
+        assertFalse(negativeCache.isMissingLibrary("bootstrap"));
+        assertFalse(negativeCache.isMissing(new AssetId("bootstrap", "css/bootstrap.css")));
+        assertTrue(negativeCache.isMissingLibrary("webjar-that-does-not-exist"));
+        assertTrue(negativeCache.isMissing(new AssetId("bootstrap", "css/bootstrap.resource.that.does.not.exist")));
+    }
+}
@@ -0,0 +1,110 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedAssetCacheTest {
+    private final CacheLoader<AssetId, Asset> loader = new CacheLoader<AssetId, Asset>() {
+        @Override
+        public Asset load(AssetId id) throws Exception {
+            return new Asset(new byte[100], MediaType.PLAIN_TEXT_UTF_8);
+        }
+
+        @Override
+        public Map<AssetId, Asset> loadAll(Iterable<? extends AssetId> ids) throws Exception {
+            // Every bulk load brings the library's source map along with it
+            Map<AssetId, Asset> assets = Maps.newHashMap();
+            for (AssetId id : ids) {
+                assets.put(id, load(id));
+                assets.put(new AssetId(id.library, "extra.js.map"), load(id));
+            }
+            return assets;
+        }
+    };
+
+    @Test
+    public void testAssetsGoIntoTheirPartitions() {
+        PartitionedAssetCache cache = build(AssetCacheType.GUAVA);
+        cache.getUnchecked(new AssetId("jquery", "jquery.js"));
+        cache.getUnchecked(new AssetId("jquery", "jquery.min.map"));
+        cache.getUnchecked(new AssetId("bootstrap", "fonts/icons.WOFF"));
+        cache.getUnchecked(new AssetId("underscore", "underscore.js"));
+
+        Map<String, AssetCache> partitions = cache.getPartitions();
+        assertEquals(ImmutableList.of("large", "core"), ImmutableList.copyOf(partitions.keySet()));
+
+        // The source map is in the large partition even though its library is pinned, since that comes first
+        assertEquals(2, partitions.get("large").size());
+        assertNotNull(partitions.get("large").getIfPresent(new AssetId("jquery", "jquery.min.map")));
+        assertEquals(1, partitions.get("core").size());
+        assertNotNull(partitions.get("core").getIfPresent(new AssetId("jquery", "jquery.js")));
+
+        assertEquals(4, cache.size());
+        assertEquals(400, cache.weight());
+        assertEquals(4, cache.stats().missCount());
+    }
+
+    @Test
+    public void testLargeAssetsDoNotEvictTheRest() {
+        for (AssetCacheType type : ImmutableList.of(AssetCacheType.GUAVA, AssetCacheType.TINY_LFU)) {
+            PartitionedAssetCache cache = build(type);
+            cache.getUnchecked(new AssetId("underscore", "underscore.js"));
+            for (int i = 0; i < 100; i++) {
+                cache.getUnchecked(new AssetId("underscore", "underscore-" + i + ".js.map"));
+            }
+
+            assertNotNull(type.name(), cache.getIfPresent(new AssetId("underscore", "underscore.js")));
+            assertTrue(type.name(), cache.getPartitions().get("large").weight() <= 3000);
+        }
+    }
+
+    @Test
+    public void testPinnedAssetsAreNeverEvicted() {
+        PartitionedAssetCache cache = build(AssetCacheType.GUAVA);
+        for (int i = 0; i < 100; i++) {
+            cache.getUnchecked(new AssetId("bootstrap", "asset-" + i + ".css"));
+        }
+
+        assertEquals(100, cache.getPartitions().get("core").size());
+        assertEquals(0, cache.stats().evictionCount());
+    }
+
+    @Test
+    public void testBulkLoadKeepsOtherPartitionsAssetsOut() {
+        PartitionedAssetCache cache = build(AssetCacheType.GUAVA);
+        cache.getAll(ImmutableList.of(new AssetId("jquery", "jquery.js"), new AssetId("jquery", "jquery.min.map")));
+
+        assertEquals(1, cache.getPartitions().get("core").size());
+        assertNull(cache.getPartitions().get("core").getIfPresent(new AssetId("jquery", "extra.js.map")));
+
+        // The extra source map came along with the load for the large partition, so it's cached there
+        assertNotNull(cache.getIfPresent(new AssetId("jquery", "extra.js.map")));
+    }
+
+    private PartitionedAssetCache build(AssetCacheType type) {
+        AssetCachePartitionConfiguration large = new AssetCachePartitionConfiguration();
+        large.setExtensions(ImmutableList.of("map", "woff"));
+        large.setMaximumWeight(3000);
+
+        AssetCachePartitionConfiguration core = new AssetCachePartitionConfiguration();
+        core.setLibraries(ImmutableList.of("jquery", "bootstrap"));
+        core.setPinned(true);
+
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.setType(type);
+        configuration.setMaximumWeight(1000);
+        configuration.getPartitions().put("large", large);
+        configuration.getPartitions().put("core", core);
+        return (PartitionedAssetCache) configuration.build(loader);
+    }
+}
@@ -1,11 +1,14 @@
 package com.bazaarvoice.dropwizard.webjars;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class TestWebJarServlet extends WebJarServlet {
     private static String[] MAVEN_GROUPS = WebJarServlet.DEFAULT_MAVEN_GROUPS;
+    private static WebJarConfiguration CONFIGURATION = new WebJarConfiguration();
+    private static MetricRegistry REGISTRY = null;
 
     public static void setMavenGroups(String... groups) {
         MAVEN_GROUPS = checkNotNull(groups);
@@ -15,7 +18,23 @@ public class TestWebJarServlet extends WebJarServlet {
         MAVEN_GROUPS = WebJarServlet.DEFAULT_MAVEN_GROUPS;
     }
 
+    public static void setConfiguration(WebJarConfiguration configuration) {
+        CONFIGURATION = checkNotNull(configuration);
+    }
+
+    public static void resetConfiguration() {
+        CONFIGURATION = new WebJarConfiguration();
+    }
+
+    public static void setRegistry(MetricRegistry registry) {
+        REGISTRY = checkNotNull(registry);
+    }
+
+    public static void resetRegistry() {
+        REGISTRY = null;
+    }
+
     public TestWebJarServlet() {
-        super(null, ImmutableList.copyOf(MAVEN_GROUPS));
+        super(null, ImmutableList.copyOf(MAVEN_GROUPS), CONFIGURATION, REGISTRY);
     }
 }
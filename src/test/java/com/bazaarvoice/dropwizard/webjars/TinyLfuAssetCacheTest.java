@@ -0,0 +1,59 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TinyLfuAssetCacheTest {
+    private final CacheLoader<AssetId, Asset> loader = new CacheLoader<AssetId, Asset>() {
+        @Override
+        public Asset load(AssetId id) throws Exception {
+            return new Asset(new byte[100], MediaType.PLAIN_TEXT_UTF_8);
+        }
+    };
+
+    @Test
+    public void testStaysWithinMaximumWeight() {
+        TinyLfuAssetCache cache = new TinyLfuAssetCache(10000, AssetCacheWeigher.BYTES, loader);
+        for (int i = 0; i < 1000; i++) {
+            cache.getUnchecked(id(i));
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.stats().evictionCount());
+    }
+
+    @Test
+    public void testEntriesWeigher() {
+        TinyLfuAssetCache cache = new TinyLfuAssetCache(10, AssetCacheWeigher.ENTRIES, loader);
+        for (int i = 0; i < 100; i++) {
+            cache.getUnchecked(id(i));
+        }
+
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testScanDoesNotFlushPopularAssets() {
+        TinyLfuAssetCache cache = new TinyLfuAssetCache(100, AssetCacheWeigher.ENTRIES, loader);
+
+        // A small set of assets that are asked for all the time, mixed with a scan through lots of assets that are
+        // only asked for once
+        for (int i = 0; i < 10000; i++) {
+            cache.getUnchecked(id(i % 20));
+            cache.getUnchecked(id(1000 + i));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(cache.getIfPresent(id(i)));
+        }
+    }
+
+    private static AssetId id(int i) {
+        return new AssetId("test-webjar", "asset-" + i + ".txt");
+    }
+}
@@ -0,0 +1,67 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class VersionRegistryTest {
+    @Test
+    public void testResolvesEveryGroup() {
+        VersionRegistry registry = new VersionRegistry(new VersionLoader(
+                ImmutableList.of("org.webjars", "com.bazaarvoice", "com.bazaarvoice.legacy")));
+
+        LibraryVersions versions = registry.get("test-webjar");
+        assertEquals("1.0", versions.version);
+        assertEquals(ImmutableList.of("1.0", "0.9-1"), ImmutableList.copyOf(versions.versions));
+        assertEquals("2.3.1", registry.get("bootstrap").version);
+    }
+
+    @Test
+    public void testResolvesOnce() {
+        final AtomicInteger loads = new AtomicInteger();
+        VersionRegistry registry = new VersionRegistry(new VersionLoader(ImmutableList.of("org.webjars")) {
+            @Override
+            LibraryVersions load(String library) {
+                loads.incrementAndGet();
+                return super.load(library);
+            }
+        });
+
+        LibraryVersions versions = registry.get("bootstrap");
+        for (int i = 0; i < 100; i++) {
+            assertSame(versions, registry.get("bootstrap"));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testMissingLibrariesNotKept() {
+        VersionRegistry registry = new VersionRegistry(new VersionLoader(ImmutableList.of("org.webjars")));
+
+        assertNull(registry.get("webjar-that-does-not-exist"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testNoSizeLimit() {
+        VersionRegistry registry = new VersionRegistry(new VersionLoader(ImmutableList.<String>of()) {
+            @Override
+            LibraryVersions load(String library) {
+                return new LibraryVersions("1.0", ImmutableList.<String>of());
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            registry.get("library-" + i);
+        }
+
+        assertEquals(1000, registry.size());
+    }
+}
@@ -26,4 +26,30 @@ public class WebJarBundleTest {
 
         assertEquals("/webjars/*", pathCaptor.getValue());
     }
+
+    @Test
+    public void testAsyncSupported() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setAsync(true);
+        new WebJarBundle(configuration).run(environment);
+
+        ServletRegistration.Dynamic dynamic = environment.servlets().addServlet(eq("webjars"), notNull(WebJarServlet.class));
+        verify(dynamic).setAsyncSupported(true);
+    }
+
+    @Test
+    public void testConfiguredBundle() {
+        final WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setAsync(true);
+        new ConfiguredWebJarBundle<WebJarConfiguration>() {
+            @Override
+            public WebJarConfiguration getWebJarConfiguration(WebJarConfiguration applicationConfiguration) {
+                return applicationConfiguration;
+            }
+        }.run(configuration, environment);
+
+        ServletRegistration.Dynamic dynamic = environment.servlets().addServlet(eq("webjars"), notNull(WebJarServlet.class));
+        verify(dynamic).addMapping("/webjars/*");
+        verify(dynamic).setAsyncSupported(true);
+    }
 }
@@ -0,0 +1,90 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.configuration.ConfigurationValidationException;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WebJarConfigurationTest {
+    private final ConfigurationFactory<WebJarConfiguration> factory = new ConfigurationFactory<WebJarConfiguration>(
+            WebJarConfiguration.class, Validation.buildDefaultValidatorFactory().getValidator(),
+            Jackson.newObjectMapper(), "dw");
+
+    @Test
+    public void testCacheDefaults() throws Exception {
+        WebJarConfiguration configuration = parse("gzip: true\n");
+
+        assertEquals(AssetCacheType.GUAVA, configuration.getCache().getType());
+        assertEquals(5 * 1024 * 1024, configuration.getCache().getMaximumWeight());
+        assertEquals(AssetCacheWeigher.BYTES, configuration.getCache().getWeigher());
+        assertEquals(Duration.minutes(5), configuration.getCache().getExpireAfterAccess());
+    }
+
+    @Test
+    public void testCacheSettings() throws Exception {
+        WebJarConfiguration configuration = parse(
+                "cache:\n" +
+                "  type: tiny-lfu\n" +
+                "  maximumWeight: 1000\n" +
+                "  weigher: entries\n");
+
+        assertEquals(AssetCacheType.TINY_LFU, configuration.getCache().getType());
+        assertEquals(1000, configuration.getCache().getMaximumWeight());
+        assertEquals(AssetCacheWeigher.ENTRIES, configuration.getCache().getWeigher());
+    }
+
+    @Test(expected = ConfigurationValidationException.class)
+    public void testInvalidCacheSettings() throws Exception {
+        parse("cache:\n" +
+              "  maximumWeight: -1\n");
+    }
+
+    @Test
+    public void testCachePartitions() throws Exception {
+        WebJarConfiguration configuration = parse(
+                "cache:\n" +
+                "  partitions:\n" +
+                "    large:\n" +
+                "      extensions: [map, woff]\n" +
+                "      maximumWeight: 1000\n" +
+                "    core:\n" +
+                "      libraries: [jquery]\n" +
+                "      pinned: true\n");
+
+        Map<String, AssetCachePartitionConfiguration> partitions = configuration.getCache().getPartitions();
+        assertEquals(ImmutableList.of("large", "core"), ImmutableList.copyOf(partitions.keySet()));
+        assertEquals(ImmutableList.of("map", "woff"), partitions.get("large").getExtensions());
+        assertEquals(1000, partitions.get("large").getMaximumWeight());
+        assertEquals(ImmutableList.of("jquery"), partitions.get("core").getLibraries());
+        assertTrue(partitions.get("core").isPinned());
+    }
+
+    @Test(expected = ConfigurationValidationException.class)
+    public void testCachePartitionMustBeSelective() throws Exception {
+        parse("cache:\n" +
+              "  partitions:\n" +
+              "    everything:\n" +
+              "      maximumWeight: 1000\n");
+    }
+
+    private WebJarConfiguration parse(final String yaml) throws Exception {
+        return factory.build(new ConfigurationSourceProvider() {
+            @Override
+            public InputStream open(String path) {
+                return new ByteArrayInputStream(yaml.getBytes(Charsets.UTF_8));
+            }
+        }, "webjars.yml");
+    }
+}
@@ -0,0 +1,58 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WebJarIndexTest {
+    private final ClassLoader classLoader = WebJarIndexTest.class.getClassLoader();
+
+    @Test
+    public void testIndexesJarResources() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader, ImmutableList.of("org.webjars"));
+
+        assertEquals("2.3.1", index.getVersion("bootstrap"));
+        assertEquals("2.3.1", index.getResourceVersion("bootstrap", "css/bootstrap.css"));
+        assertTrue(index.contains("jquery", "jquery.js"));
+    }
+
+    @Test
+    public void testMissingResources() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader, ImmutableList.of("org.webjars"));
+
+        assertFalse(index.contains("bootstrap", "css/bootstrap.resource.that.does.not.exist"));
+        assertFalse(index.contains("webjar-that-does-not-exist", "css/app.css"));
+        assertNull(index.getVersion("webjar-that-does-not-exist"));
+    }
+
+    @Test
+    public void testIndexesEveryVersion() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader,
+                ImmutableList.of("org.webjars", "com.bazaarvoice", "com.bazaarvoice.legacy"));
+
+        assertEquals("1.0", index.getVersion("test-webjar"));
+        assertEquals(ImmutableList.of("1.0", "0.9-1"), ImmutableList.copyOf(index.getVersions("test-webjar")));
+        assertEquals("0.9", index.getResourceVersion("test-webjar", "0.9-1", "hello.txt"));
+        assertEquals("1.0", index.getResourceVersion("test-webjar", "1.0", "hello.txt"));
+        assertNull(index.getResourceVersion("test-webjar", "0.9-1", "goodbye.txt"));
+    }
+
+    @Test
+    public void testIndexesDirectoryResources() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader, ImmutableList.of("org.webjars", "com.bazaarvoice"));
+
+        assertEquals("1.0", index.getVersion("test-webjar"));
+        assertTrue(index.contains("test-webjar", "hello.txt"));
+    }
+
+    @Test
+    public void testOnlyConfiguredGroupsAreIndexed() throws Exception {
+        WebJarIndex index = WebJarIndex.build(classLoader, ImmutableList.of("org.webjars"));
+
+        assertFalse(index.contains("test-webjar", "hello.txt"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.bazaarvoice.dropwizard.webjars;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WebJarMetricsTest {
+    private final MetricRegistry registry = new MetricRegistry();
+
+    @Test
+    public void testResponseTimers() {
+        WebJarMetrics metrics = new WebJarMetrics(registry, 10);
+        metrics.recordResponse(200, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.recordResponse(304, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.recordResponse(304, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.recordResponse(416, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(1, registry.timer(name(WebJarServlet.class, "responses", "200")).getCount());
+        assertEquals(2, registry.timer(name(WebJarServlet.class, "responses", "304")).getCount());
+        assertEquals(0, registry.timer(name(WebJarServlet.class, "responses", "404")).getCount());
+        assertEquals(1, registry.timer(name(WebJarServlet.class, "responses", "other")).getCount());
+    }
+
+    @Test
+    public void testBytesServed() {
+        WebJarMetrics metrics = new WebJarMetrics(registry, 10);
+        metrics.markBytesServed(100);
+        metrics.markBytesServed(50);
+
+        assertEquals(150, registry.meter(name(WebJarServlet.class, "bytes-served")).getCount());
+    }
+
+    @Test
+    public void testLibraryCountersAreBounded() {
+        WebJarMetrics metrics = new WebJarMetrics(registry, 2);
+        metrics.markLibrary("jquery");
+        metrics.markLibrary("bootstrap");
+        metrics.markLibrary("jquery");
+        metrics.markLibrary("angularjs");
+        metrics.markLibrary("backbonejs");
+
+        assertEquals(2, registry.counter(name(WebJarServlet.class, "libraries", "jquery")).getCount());
+        assertEquals(1, registry.counter(name(WebJarServlet.class, "libraries", "bootstrap")).getCount());
+        assertEquals(2, registry.counter(name(WebJarServlet.class, "libraries", "other")).getCount());
+        assertFalse(registry.getCounters().containsKey(name(WebJarServlet.class, "libraries", "angularjs")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCacheGauges() {
+        Cache<String, String> cache = CacheBuilder.newBuilder().recordStats().build();
+        cache.put("a", "b");
+        cache.getIfPresent("a");
+        cache.getIfPresent("c");
+
+        new WebJarMetrics(registry, 10).registerCache("test", cache);
+
+        Gauge<Long> hits = registry.getGauges().get(name(WebJarServlet.class, "caches", "test", "hits"));
+        Gauge<Long> misses = registry.getGauges().get(name(WebJarServlet.class, "caches", "test", "misses"));
+        Gauge<Long> size = registry.getGauges().get(name(WebJarServlet.class, "caches", "test", "size"));
+        assertEquals(1L, (long) hits.getValue());
+        assertEquals(1L, (long) misses.getValue());
+        assertEquals(1L, (long) size.getValue());
+    }
+
+    @Test
+    public void testCachePartitionGauges() {
+        AssetCachePartitionConfiguration maps = new AssetCachePartitionConfiguration();
+        maps.setExtensions(ImmutableList.of("map"));
+        maps.setMaximumWeight(4000);
+
+        AssetCacheConfiguration configuration = new AssetCacheConfiguration();
+        configuration.getPartitions().put("maps", maps);
+        PartitionedAssetCache cache = (PartitionedAssetCache) configuration.build(new CacheLoader<AssetId, Asset>() {
+            @Override
+            public Asset load(AssetId id) throws Exception {
+                return new Asset(new byte[100], MediaType.PLAIN_TEXT_UTF_8);
+            }
+        });
+        cache.getUnchecked(new AssetId("jquery", "jquery.min.map"));
+        cache.getUnchecked(new AssetId("jquery", "jquery.js"));
+
+        WebJarMetrics metrics = new WebJarMetrics(registry, 10);
+        metrics.registerCache("assets", cache);
+        metrics.registerCachePartitions(cache, configuration);
+
+        Map<String, Gauge> gauges = registry.getGauges();
+        assertEquals(200L, gauges.get(name(WebJarServlet.class, "caches", "assets", "weight")).getValue());
+        assertEquals(1L, gauges.get(name(WebJarServlet.class, "caches", "partitions", "maps", "size")).getValue());
+        assertEquals(100L, gauges.get(name(WebJarServlet.class, "caches", "partitions", "maps", "weight")).getValue());
+        assertEquals(0.025, gauges.get(name(WebJarServlet.class, "caches", "partitions", "maps", "occupancy"))
+                .getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSecondServletReplacesGauges() {
+        Cache<String, String> first = CacheBuilder.newBuilder().recordStats().build();
+        Cache<String, String> second = CacheBuilder.newBuilder().recordStats().build();
+        second.put("a", "b");
+
+        new WebJarMetrics(registry, 10).registerCache("test", first);
+        new WebJarMetrics(registry, 10).registerCache("test", second);
+
+        Gauge<Long> size = registry.getGauges().get(name(WebJarServlet.class, "caches", "test", "size"));
+        assertEquals(1L, (long) size.getValue());
+    }
+}
@@ -1,27 +1,81 @@
 package com.bazaarvoice.dropwizard.webjars;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import io.dropwizard.util.Duration;
 import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.servlet.ServletMapping;
 import org.eclipse.jetty.servlet.ServletTester;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.JarURLConnection;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.zip.GZIPInputStream;
 
+import static com.google.common.net.HttpHeaders.ACCEPT_ENCODING;
+import static com.google.common.net.HttpHeaders.ACCEPT_RANGES;
+import static com.google.common.net.HttpHeaders.CACHE_CONTROL;
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
+import static com.google.common.net.HttpHeaders.CONTENT_RANGE;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static com.google.common.net.HttpHeaders.ETAG;
 import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
 import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.IF_RANGE;
 import static com.google.common.net.HttpHeaders.LAST_MODIFIED;
+import static com.google.common.net.HttpHeaders.LINK;
+import static com.google.common.net.HttpHeaders.LOCATION;
+import static com.google.common.net.HttpHeaders.RANGE;
+import static com.google.common.net.HttpHeaders.VARY;
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class WebJarServletTest {
+    private static final String SOURCE_MAP = "SourceMap";
+
     private final ServletTester servletTester = new ServletTester();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setup() throws Exception {
-        servletTester.addServlet(TestWebJarServlet.class, TestWebJarServlet.URL_PREFIX + "*");
+        ServletHolder holder = servletTester.addServlet(TestWebJarServlet.class, TestWebJarServlet.URL_PREFIX + "*");
+        holder.setAsyncSupported(true);
+
+        ServletMapping combo = new ServletMapping();
+        combo.setServletName(holder.getName());
+        combo.setPathSpec(TestWebJarServlet.COMBO_PATH);
+        servletTester.getContext().getServletHandler().addServletMapping(combo);
         servletTester.start();
     }
 
@@ -29,6 +83,8 @@ public class WebJarServletTest {
     public void teardown() throws Exception {
         servletTester.stop();
         TestWebJarServlet.resetMavenGroups();
+        TestWebJarServlet.resetConfiguration();
+        TestWebJarServlet.resetRegistry();
     }
 
     @Test
@@ -58,6 +114,349 @@ public class WebJarServletTest {
         assertEquals("Hello World!", response.getContent());
     }
 
+    @Test
+    public void testMultipleVersions() throws Exception {
+        setMavenGroups("org.webjars", "com.bazaarvoice", "com.bazaarvoice.legacy");
+
+        assertEquals("Hello World!", get("test-webjar/hello.txt").getContent());
+        assertEquals("Hello World!", get("test-webjar/1.0/hello.txt").getContent());
+        assertEquals("Hello Old World!", get("test-webjar/0.9-1/hello.txt").getContent());
+        assertEquals("Hello Old World!", get("test-webjar/0.9/hello.txt").getContent());
+        assertEquals("public, max-age=31536000, immutable", get("test-webjar/0.9/hello.txt").get(CACHE_CONTROL));
+        assertEquals(404, get("test-webjar/0.8/hello.txt").getStatus());
+    }
+
+    @Test
+    public void testClasspathIndexMultipleVersions() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setClasspathIndex(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice", "com.bazaarvoice.legacy");
+
+        assertEquals("Hello World!", get("test-webjar/hello.txt").getContent());
+        assertEquals("Hello World!", get("test-webjar/1.0/hello.txt").getContent());
+        assertEquals("Hello Old World!", get("test-webjar/0.9-1/hello.txt").getContent());
+        assertEquals(404, get("test-webjar/0.9/goodbye.txt").getStatus());
+    }
+
+    @Test
+    public void testOtherVersionsNeedTheirGroup() throws Exception {
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        assertEquals(404, get("test-webjar/0.9/hello.txt").getStatus());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        byte[] expected = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setAsync(true);
+        setConfiguration(configuration);
+
+        // The first request is a cache miss that is loaded by the loader executor, the second is a hit
+        for (int i = 0; i < 2; i++) {
+            HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(expected, response.getContentBytes());
+        }
+
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+        assertEquals(404, get("webjar-that-does-not-exist/css/app.css").getStatus());
+    }
+
+    @Test
+    public void testAsyncWriteOutlastsTimeout() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setAsync(true);
+        configuration.setCombo(true);
+        configuration.setAsyncTimeout(Duration.milliseconds(100));
+        setConfiguration(configuration);
+        MetricRegistry registry = new MetricRegistry();
+        TestWebJarServlet.setRegistry(registry);
+
+        // A few megabytes for a client that doesn't read any of them until well after the timeout
+        String query = Joiner.on('&').join(
+                Collections.nCopies(AssetCombiner.MAXIMUM_ASSETS, "bootstrap/css/bootstrap.css"));
+        URI uri = URI.create(servletTester.createConnector(true));
+        Socket socket = new Socket();
+        try {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+            socket.getOutputStream().write(("GET " + WebJarServlet.COMBO_PATH + '?' + query + " HTTP/1.1\r\n"
+                    + "Host: localhost\r\nConnection: close\r\n\r\n").getBytes(Charsets.US_ASCII));
+            Thread.sleep(1000);
+            ByteStreams.toByteArray(socket.getInputStream());
+        } finally {
+            socket.close();
+        }
+
+        // The timeout closed out the exchange once, and the write finishing or failing afterwards didn't again
+        String name = MetricRegistry.name(WebJarServlet.class, "responses", "200");
+        assertEquals(1, registry.timer(name).getCount());
+        assertEquals(200, get("bootstrap/css/bootstrap.css").getStatus());
+        assertEquals(2, registry.timer(name).getCount());
+    }
+
+    @Test
+    public void testBoundedLoading() throws Exception {
+        byte[] expected = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setBoundedLoading(true);
+        setConfiguration(configuration);
+
+        // The first request waits for the loader executor to load the asset, the second is a hit
+        for (int i = 0; i < 2; i++) {
+            HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(expected, response.getContentBytes());
+        }
+
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+        assertEquals(404, get("webjar-that-does-not-exist/css/app.css").getStatus());
+    }
+
+    @Test
+    public void testAsyncConditionalAndRangeRequests() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(true);
+        configuration.setAsync(true);
+        setConfiguration(configuration);
+
+        HttpTester.Response full = get("bootstrap/css/bootstrap.css");
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(IF_NONE_MATCH, full.get(ETAG));
+        assertEquals(304, get(request).getStatus());
+
+        request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=0-9");
+        HttpTester.Response response = get(request);
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(full.getContentBytes(), 0, 10), response.getContentBytes());
+
+        request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        response = get(request);
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.get(CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testClasspathIndex() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setClasspathIndex(true);
+        setConfiguration(configuration);
+
+        assertEquals(200, get("bootstrap/css/bootstrap.css").getStatus());
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+        assertEquals(404, get("webjar-that-does-not-exist/css/app.css").getStatus());
+    }
+
+    @Test
+    public void testClasspathIndexNonStandardGroupWebjar() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setClasspathIndex(true);
+        TestWebJarServlet.setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response response = get("test-webjar/hello.txt");
+        assertEquals(200, response.getStatus());
+        assertEquals("Hello World!", response.getContent());
+    }
+
+    @Test
+    public void testMissingAssetsAreRemembered() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(404, get("webjar-that-does-not-exist/css/app.css").getStatus());
+            assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+            assertEquals(200, get("bootstrap/css/bootstrap.css").getStatus());
+        }
+    }
+
+    @Test
+    public void testBloomFilter() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setBloomFilter(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        assertEquals(200, get("bootstrap/css/bootstrap.css").getStatus());
+        assertEquals(200, get("bootstrap/2.3.1/css/bootstrap.css").getStatus());
+        assertEquals(200, get("test-webjar/hello.txt").getStatus());
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+        assertEquals(404, get("webjar-that-does-not-exist/css/app.css").getStatus());
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        enableGzip();
+        HttpTester.Response identity = get("bootstrap/css/bootstrap.css");
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "deflate, gzip");
+
+        HttpTester.Response response = get(request);
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.get(CONTENT_ENCODING));
+        assertEquals(ACCEPT_ENCODING, response.get(VARY));
+        assertEquals(ACCEPT_ENCODING, identity.get(VARY));
+        assertNull(identity.get(CONTENT_ENCODING));
+        assertFalse(identity.get(ETAG).equals(response.get(ETAG)));
+
+        byte[] decompressed = ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes())));
+        assertArrayEquals(identity.getContentBytes(), decompressed);
+    }
+
+    @Test
+    public void testGzipNotAcceptable() {
+        enableGzip();
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip;q=0, *");
+
+        HttpTester.Response response = get(request);
+        assertEquals(200, response.getStatus());
+        assertNull(response.get(CONTENT_ENCODING));
+        assertEquals(127247, response.getContentBytes().length);
+
+        // Without an Accept-Encoding header at all the asset is sent as it is too
+        response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertNull(response.get(CONTENT_ENCODING));
+        assertEquals(127247, response.getContentBytes().length);
+    }
+
+    @Test
+    public void testGzipWildcard() {
+        enableGzip();
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "*");
+
+        HttpTester.Response response = get(request);
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.get(CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testGzipETag304() {
+        enableGzip();
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        String eTag = get(request).get(ETAG);
+
+        request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        request.setHeader(IF_NONE_MATCH, eTag);
+
+        HttpTester.Response response = get(request);
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    public void testSmallAssetNotGzipped() {
+        enableGzip();
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Request request = request("test-webjar/hello.txt");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+
+        HttpTester.Response response = get(request);
+        assertEquals(200, response.getStatus());
+        assertNull(response.get(CONTENT_ENCODING));
+        assertNull(response.get(VARY));
+        assertEquals("Hello World!", response.getContent());
+    }
+
+    @Test
+    public void testGzipDisabled() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(false);
+        setConfiguration(configuration);
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+
+        HttpTester.Response response = get(request);
+        assertEquals(200, response.getStatus());
+        assertNull(response.get(CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testDirectStorage() {
+        byte[] expected = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setStorage(AssetStorage.DIRECT);
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(expected, response.getContentBytes());
+    }
+
+    @Test
+    public void testVersionedUrl() {
+        HttpTester.Response response = get("bootstrap/2.3.1/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertEquals("public, max-age=31536000, immutable", response.get(CACHE_CONTROL));
+        assertArrayEquals(get("bootstrap/css/bootstrap.css").getContentBytes(), response.getContentBytes());
+    }
+
+    @Test
+    public void testVersionedUrlETag() {
+        String eTag = get("bootstrap/2.3.1/css/bootstrap.css").get(ETAG);
+
+        HttpTester.Request request = request("bootstrap/2.3.1/css/bootstrap.css");
+        request.setHeader(IF_NONE_MATCH, eTag);
+
+        HttpTester.Response response = get(request);
+        assertEquals(304, response.getStatus());
+        assertEquals("public, max-age=31536000, immutable", response.get(CACHE_CONTROL));
+    }
+
+    @Test
+    public void testRepeatedRequests() {
+        HttpTester.Response first = get("bootstrap/2.3.1/css/bootstrap.css");
+        HttpTester.Response second = get("bootstrap/2.3.1/css/bootstrap.css");
+        assertEquals(200, second.getStatus());
+        assertEquals("public, max-age=31536000, immutable", second.get(CACHE_CONTROL));
+        assertEquals(first.get(ETAG), second.get(ETAG));
+        assertArrayEquals(first.getContentBytes(), second.getContentBytes());
+
+        assertEquals(404, get("bootstrap/2.3.0/css/bootstrap.css").getStatus());
+        assertNull(get("bootstrap/css/bootstrap.css").get(CACHE_CONTROL));
+    }
+
+    @Test
+    public void testWrongVersionedUrl() {
+        HttpTester.Response response = get("bootstrap/2.3.0/css/bootstrap.css");
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    public void testUnversionedUrlNotImmutable() {
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertNull(response.get(CACHE_CONTROL));
+    }
+
+    @Test
+    public void testRedirectToVersionedUrl() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setRedirectToVersionedUrls(true);
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(302, response.getStatus());
+        assertTrue(response.get(LOCATION).endsWith("/webjars/bootstrap/2.3.1/css/bootstrap.css"));
+        assertEquals("public, max-age=300", response.get(CACHE_CONTROL));
+
+        assertEquals(200, get("bootstrap/2.3.1/css/bootstrap.css").getStatus());
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+    }
+
     @Test
     public void testCorrectETag() {
         String eTag = get("bootstrap/css/bootstrap.css").get(ETAG);
@@ -81,11 +480,42 @@ public class WebJarServletTest {
 
     @Test
     public void testGzipETag() {
-        String eTag = get("bootstrap/css/bootstrap.css").get(ETAG);
+        // An asset we don't compress ourselves may have been compressed by Jetty, which suffixes its ETag
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+        String eTag = get("test-webjar/hello.txt").get(ETAG);
         eTag = eTag.substring(0, eTag.length() - 1) + "-gzip" + '"';
 
+        HttpTester.Request request = request("test-webjar/hello.txt");
+        request.setHeader(IF_NONE_MATCH, eTag);
+
+        HttpTester.Response response = get(request);
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    public void testETagOfOtherEncoding() {
+        enableGzip();
         HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        String gzipETag = get(request).get(ETAG);
+        String eTag = get("bootstrap/css/bootstrap.css").get(ETAG);
+
+        request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(IF_NONE_MATCH, gzipETag);
+        assertEquals(200, get(request).getStatus());
+
+        request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
         request.setHeader(IF_NONE_MATCH, eTag);
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    public void testWeakETag() {
+        String eTag = get("bootstrap/css/bootstrap.css").get(ETAG);
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(IF_NONE_MATCH, "\"some-other-etag\", W/" + eTag);
 
         HttpTester.Response response = get(request);
         assertEquals(304, response.getStatus());
@@ -111,6 +541,122 @@ public class WebJarServletTest {
         assertNotNull(response.get(ETAG));
     }
 
+    @Test
+    public void testAcceptRanges() {
+        assertEquals("bytes", get("bootstrap/css/bootstrap.css").get(ACCEPT_RANGES));
+    }
+
+    @Test
+    public void testSingleRange() {
+        byte[] content = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=100-199");
+
+        HttpTester.Response response = get(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/" + content.length, response.get(CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentBytes());
+    }
+
+    @Test
+    public void testSuffixRange() {
+        byte[] content = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=-10");
+
+        HttpTester.Response response = get(request);
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length),
+                response.getContentBytes());
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        byte[] content = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=0-9, 100-109");
+
+        HttpTester.Response response = get(request);
+        assertEquals(206, response.getStatus());
+        assertTrue(response.get(CONTENT_TYPE).startsWith("multipart/byteranges; boundary="));
+
+        String boundary = response.get(CONTENT_TYPE).substring("multipart/byteranges; boundary=".length());
+        String body = new String(response.getContentBytes(), Charsets.ISO_8859_1);
+        assertEquals(body.length(), Integer.parseInt(response.get(CONTENT_LENGTH)));
+        assertTrue(body.contains("Content-Range: bytes 0-9/" + content.length + "\r\n\r\n"
+                + new String(content, 0, 10, Charsets.ISO_8859_1) + "\r\n--" + boundary + "\r\n"));
+        assertTrue(body.endsWith("Content-Range: bytes 100-109/" + content.length + "\r\n\r\n"
+                + new String(content, 100, 10, Charsets.ISO_8859_1) + "\r\n--" + boundary + "--\r\n"));
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        byte[] content = get("bootstrap/css/bootstrap.css").getContentBytes();
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=" + content.length + "-");
+
+        HttpTester.Response response = get(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + content.length, response.get(CONTENT_RANGE));
+    }
+
+    @Test
+    public void testInvalidRangeIgnored() {
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=abc");
+
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    public void testIfRange() {
+        String eTag = get("bootstrap/css/bootstrap.css").get(ETAG);
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=0-9");
+        request.setHeader(IF_RANGE, eTag);
+        assertEquals(206, get(request).getStatus());
+
+        request.setHeader(IF_RANGE, '"' + "wrong-etag" + '"');
+        assertEquals(200, get(request).getStatus());
+
+        request.setHeader(IF_RANGE, "W/" + eTag);
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    public void testIfRangeDate() {
+        HttpTester.Response full = get("bootstrap/css/bootstrap.css");
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(RANGE, "bytes=0-9");
+        request.setHeader(IF_RANGE, full.get(LAST_MODIFIED));
+        assertEquals(206, get(request).getStatus());
+
+        request.setHeader(IF_RANGE, "Thu, 01 Jan 1970 00:00:00 GMT");
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    public void testGzipRange() throws Exception {
+        enableGzip();
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        HttpTester.Response full = get(request);
+
+        request.setHeader(RANGE, "bytes=0-9");
+        request.setHeader(IF_RANGE, full.get(ETAG));
+
+        HttpTester.Response response = get(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("gzip", response.get(CONTENT_ENCODING));
+        assertArrayEquals(Arrays.copyOfRange(full.getContentBytes(), 0, 10), response.getContentBytes());
+    }
+
     @Test
     public void testCorrectIfModifiedSince() {
         long lastModified = get("bootstrap/css/bootstrap.css").getDateField(LAST_MODIFIED);
@@ -122,6 +668,16 @@ public class WebJarServletTest {
         assertEquals(304, response.getStatus());
     }
 
+    @Test
+    public void testLastModifiedComesFromJarEntry() throws Exception {
+        URL url = Resources.getResource("META-INF/resources/webjars/bootstrap/2.3.1/css/bootstrap.css");
+        // The entry's time is read the same way whatever the default timezone is
+        JarEntry entry = ((JarURLConnection) url.openConnection()).getJarEntry();
+        long expected = (AssetLoader.getEntryTime(entry) / 1000) * 1000;
+
+        assertEquals(expected, get("bootstrap/css/bootstrap.css").getDateField(LAST_MODIFIED));
+    }
+
     @Test
     public void testPastIfModifiedSince() {
         long lastModified = get("bootstrap/css/bootstrap.css").getDateField(LAST_MODIFIED);
@@ -144,6 +700,313 @@ public class WebJarServletTest {
         assertEquals(304, response.getStatus());
     }
 
+    @Test
+    public void testManifest() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setManifest(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response response = get("manifest.json");
+        assertEquals(200, response.getStatus());
+        assertTrue(response.get(CONTENT_TYPE).startsWith("application/json"));
+
+        JsonNode manifest = new ObjectMapper().readTree(response.getContentBytes());
+        assertTrue(manifest.has("bootstrap"));
+        assertTrue(manifest.get("bootstrap").get("resources").has("css/bootstrap.css"));
+
+        JsonNode hello = manifest.get("test-webjar").get("resources").get("hello.txt");
+        assertEquals("1.0", manifest.get("test-webjar").get("version").asText());
+        assertEquals(12, hello.get("size").asInt());
+        assertEquals("text/plain; charset=utf-8", hello.get("contentType").asText());
+        assertEquals(integrity("Hello World!"), hello.get("integrity").asText());
+    }
+
+    @Test
+    public void testLibraryManifest() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setManifest(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response response = get("manifest.json?library=test-webjar");
+        assertEquals(200, response.getStatus());
+
+        JsonNode manifest = new ObjectMapper().readTree(response.getContentBytes());
+        assertEquals("1.0", manifest.get("version").asText());
+        assertEquals(integrity("Hello World!"), manifest.get("resources").get("hello.txt").get("integrity").asText());
+
+        HttpTester.Request request = request("manifest.json?library=test-webjar");
+        request.setHeader(IF_NONE_MATCH, response.get(ETAG));
+        assertEquals(304, get(request).getStatus());
+    }
+
+    @Test
+    public void testManifestOfLibraryThatDoesNotExist() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setManifest(true);
+        setConfiguration(configuration);
+
+        assertEquals(404, get("manifest.json?library=webjar-that-does-not-exist").getStatus());
+    }
+
+    @Test
+    public void testAsyncManifest() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setManifest(true);
+        configuration.setAsync(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response response = get("manifest.json?library=test-webjar");
+        assertEquals(200, response.getStatus());
+        assertEquals("1.0", new ObjectMapper().readTree(response.getContentBytes()).get("version").asText());
+    }
+
+    @Test
+    public void testManifestDisabledByDefault() {
+        assertEquals(404, get("manifest.json").getStatus());
+    }
+
+    @Test
+    public void testPreferMinified() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreferMinified(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response script = get("test-webjar/app.js");
+        assertEquals(200, script.getStatus());
+        assertTrue(script.getContent().startsWith("function hello(){"));
+        assertEquals("app.min.js.map", script.get(SOURCE_MAP));
+
+        HttpTester.Response stylesheet = get("test-webjar/1.0/style.css");
+        assertEquals("body{color:#000}\n", stylesheet.getContent());
+        assertNull(stylesheet.get(SOURCE_MAP));
+
+        assertNull(get("test-webjar/app.min.js").get(SOURCE_MAP));
+        assertEquals("Hello World!", get("test-webjar/hello.txt").getContent());
+        assertEquals(404, get("test-webjar/missing.js").getStatus());
+    }
+
+    @Test
+    public void testPreferMinifiedWithClasspathIndex() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreferMinified(true);
+        configuration.setClasspathIndex(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response script = get("test-webjar/app.js");
+        assertTrue(script.getContent().startsWith("function hello(){"));
+        assertEquals("app.min.js.map", script.get(SOURCE_MAP));
+        assertEquals(get("bootstrap/css/bootstrap.min.css").getContent(),
+                get("bootstrap/css/bootstrap.css").getContent());
+    }
+
+    @Test
+    public void testMinifiedNotPreferredByDefault() throws Exception {
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        HttpTester.Response script = get("test-webjar/app.js");
+        assertTrue(script.getContent().startsWith("function hello() {"));
+        assertNull(script.get(SOURCE_MAP));
+    }
+
+    @Test
+    public void testPreloadLinks() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreloadLinks(true);
+        setConfiguration(configuration);
+
+        assertEquals("</webjars/bootstrap/js/bootstrap.js>; rel=preload; as=script, "
+                + "</webjars/jquery/jquery.js>; rel=preload; as=script",
+                get("bootstrap/css/bootstrap.css").get(LINK));
+        assertEquals("</webjars/bootstrap/2.3.1/css/bootstrap.css>; rel=preload; as=style, "
+                + "</webjars/jquery/1.9.0/jquery.js>; rel=preload; as=script",
+                get("bootstrap/2.3.1/js/bootstrap.js").get(LINK));
+
+        // Only entry assets preload anything
+        assertNull(get("bootstrap/css/bootstrap-responsive.css").get(LINK));
+        assertNull(get("jquery/jquery.js").get(LINK));
+    }
+
+    @Test
+    public void testPreloadEntryPoints() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setPreloadLinks(true);
+        configuration.setPreloadEntryPoints(ImmutableMap.<String, List<String>>of(
+                "test-webjar", ImmutableList.of("style.css", "app.js", "hello.txt")));
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        assertEquals("</webjars/test-webjar/app.js>; rel=preload; as=script, "
+                + "</webjars/test-plugin/test-plugin.js>; rel=preload; as=script, "
+                + "</webjars/bootstrap/css/bootstrap.css>; rel=preload; as=style, "
+                + "</webjars/bootstrap/js/bootstrap.js>; rel=preload; as=script, "
+                + "</webjars/jquery/jquery.js>; rel=preload; as=script",
+                get("test-webjar/style.css").get(LINK));
+        assertEquals("</webjars/test-webjar/style.css>; rel=preload; as=style, "
+                + "</webjars/test-webjar/app.js>; rel=preload; as=script, "
+                + "</webjars/bootstrap/css/bootstrap.css>; rel=preload; as=style, "
+                + "</webjars/bootstrap/js/bootstrap.js>; rel=preload; as=script, "
+                + "</webjars/jquery/jquery.js>; rel=preload; as=script",
+                get("test-plugin/test-plugin.js").get(LINK));
+    }
+
+    @Test
+    public void testPreloadLinksDisabledByDefault() {
+        assertNull(get("bootstrap/css/bootstrap.css").get(LINK));
+    }
+
+    @Test
+    public void testDiskCache() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(true);
+        configuration.setDiskCacheDirectory(folder.getRoot().getPath());
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertEquals(1, folder.getRoot().listFiles().length);
+
+        // Restarting the servlet empties its in-memory cache, the asset comes back from disk
+        setConfiguration(configuration);
+
+        HttpTester.Response cached = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, cached.getStatus());
+        assertEquals(response.get(ETAG), cached.get(ETAG));
+        assertEquals(response.get(LAST_MODIFIED), cached.get(LAST_MODIFIED));
+        assertArrayEquals(response.getContentBytes(), cached.getContentBytes());
+
+        HttpTester.Request request = request("bootstrap/css/bootstrap.css");
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        HttpTester.Response gzipped = get(request);
+        assertEquals("gzip", gzipped.get(CONTENT_ENCODING));
+        byte[] decompressed = ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentBytes())));
+        assertArrayEquals(response.getContentBytes(), decompressed);
+    }
+
+    @Test
+    public void testTinyLfuCache() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.getCache().setType(AssetCacheType.TINY_LFU);
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertEquals(response.get(ETAG), get("bootstrap/css/bootstrap.css").get(ETAG));
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+    }
+
+    @Test
+    public void testPreloadedCache() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.getCache().setType(AssetCacheType.PRELOADED);
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get("bootstrap/css/bootstrap.css");
+        assertEquals(200, response.getStatus());
+        assertEquals(response.get(ETAG), get("bootstrap/css/bootstrap.css").get(ETAG));
+        assertEquals(404, get("bootstrap/css/bootstrap.resource.that.does.not.exist").getStatus());
+    }
+
+    @Test
+    public void testBulkLoad() {
+        String eTag = get("bootstrap/css/bootstrap-responsive.css").get(ETAG);
+
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setBulkLoad(true);
+        setConfiguration(configuration);
+
+        assertEquals(200, get("bootstrap/css/bootstrap.css").getStatus());
+        HttpTester.Response response = get("bootstrap/css/bootstrap-responsive.css");
+        assertEquals(200, response.getStatus());
+        assertEquals(eTag, response.get(ETAG));
+        assertEquals(404, get("bootstrap/css/missing.css").getStatus());
+    }
+
+    @Test
+    public void testCombo() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setCombo(true);
+        setConfiguration(configuration);
+        setMavenGroups("org.webjars", "com.bazaarvoice");
+
+        String app = get("test-webjar/app.js").getContent();
+        HttpTester.Response response = get(combo("test-webjar/app.js&test-plugin/test-plugin.js"));
+        assertEquals(200, response.getStatus());
+        assertTrue(response.get(CONTENT_TYPE).startsWith("application/javascript"));
+        assertEquals(app + "\n;\nwindow.testPlugin = true;\n", response.getContent());
+        assertNotNull(response.get(ETAG));
+
+        HttpTester.Request request = combo("test-webjar/app.js&test-plugin/test-plugin.js");
+        request.setHeader(IF_NONE_MATCH, response.get(ETAG));
+        assertEquals(304, get(request).getStatus());
+
+        // The order of the assets matters
+        HttpTester.Response reversed = get(combo("test-plugin/test-plugin.js&test-webjar/app.js"));
+        assertEquals("window.testPlugin = true;\n\n;\n" + app, reversed.getContent());
+        assertFalse(response.get(ETAG).equals(reversed.get(ETAG)));
+    }
+
+    @Test
+    public void testComboOfVersionedStylesheets() throws Exception {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(true);
+        configuration.setCombo(true);
+        setConfiguration(configuration);
+
+        String query = "bootstrap/2.3.1/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css";
+        HttpTester.Response response = get(combo(query));
+        assertEquals(200, response.getStatus());
+        assertEquals(get("bootstrap/css/bootstrap.css").getContent() + "\n"
+                + get("bootstrap/css/bootstrap-responsive.css").getContent(), response.getContent());
+
+        HttpTester.Request request = combo(query);
+        request.setHeader(ACCEPT_ENCODING, "gzip");
+        HttpTester.Response gzipped = get(request);
+        assertEquals("gzip", gzipped.get(CONTENT_ENCODING));
+        assertArrayEquals(response.getContentBytes(), ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentBytes()))));
+    }
+
+    @Test
+    public void testInvalidCombos() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setCombo(true);
+        setConfiguration(configuration);
+
+        assertEquals(404, get(combo("bootstrap/css/bootstrap.css&bootstrap/css/missing.css")).getStatus());
+        assertEquals(404, get(combo("bootstrap/css/bootstrap.css&webjar-that-does-not-exist/a.css")).getStatus());
+        assertEquals(400, get(combo("bootstrap/css/bootstrap.css&bootstrap/js/bootstrap.js")).getStatus());
+        assertEquals(400, get(combo("&")).getStatus());
+    }
+
+    @Test
+    public void testAsyncCombo() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setCombo(true);
+        configuration.setAsync(true);
+        setConfiguration(configuration);
+
+        HttpTester.Response response = get(combo("bootstrap/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css"));
+        assertEquals(200, response.getStatus());
+        assertEquals(200, get(combo("bootstrap/css/bootstrap.css&bootstrap/css/bootstrap-responsive.css")).getStatus());
+    }
+
+    @Test
+    public void testComboDisabledByDefault() {
+        assertEquals(404, get(combo("bootstrap/css/bootstrap.css")).getStatus());
+    }
+
+    private static String integrity(String content) throws Exception {
+        byte[] bytes = content.getBytes(Charsets.UTF_8);
+        return "sha256-" + BaseEncoding.base64().encode(MessageDigest.getInstance("SHA-256").digest(bytes))
+                + " sha384-" + BaseEncoding.base64().encode(MessageDigest.getInstance("SHA-384").digest(bytes));
+    }
+
     private HttpTester.Request request(String url) {
         HttpTester.Request request = HttpTester.newRequest();
         request.setMethod("GET");
@@ -152,6 +1015,12 @@ public class WebJarServletTest {
         return request;
     }
 
+    private HttpTester.Request combo(String query) {
+        HttpTester.Request request = request("");
+        request.setURI(WebJarServlet.COMBO_PATH + '?' + query);
+        return request;
+    }
+
     private HttpTester.Response get(String url) {
         HttpTester.Request request = request(url);
         return get(request);
@@ -170,6 +1039,24 @@ public class WebJarServletTest {
         return response;
     }
 
+    private void enableGzip() {
+        WebJarConfiguration configuration = new WebJarConfiguration();
+        configuration.setGzip(true);
+        setConfiguration(configuration);
+    }
+
+    private void setConfiguration(WebJarConfiguration configuration) {
+        try {
+            servletTester.stop();
+
+            TestWebJarServlet.setConfiguration(configuration);
+
+            servletTester.start();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     private void setMavenGroups(String... groups) {
         try {
             servletTester.stop();
@@ -0,0 +1 @@
+window.testPlugin = true;
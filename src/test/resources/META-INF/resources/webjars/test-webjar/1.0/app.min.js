@@ -0,0 +1,2 @@
+function hello(){return"Hello World!"}
+//# sourceMappingURL=app.min.js.map